@@ -0,0 +1,57 @@
+/**
+ * Adjacency is a precomputed neighbor table for one topology and board size, in compressed
+ * sparse row form. Tiles are numbered by index = y * size + x, and the neighbors of tile i
+ * are target[start[i]], ..., target[start[i + 1] - 1].
+ *
+ * Tables are immutable and shared by all boards of the same topology and size.
+ */
+
+public class Adjacency {
+  final int size;
+  final int[] start, target;
+  final Coord[] coords;  // index -> Coord, so that boards need not allocate Coords per move
+
+  Adjacency(int size, int[] start, int[] target) {
+    this.size = size;
+    this.start = start;
+    this.target = target;
+    coords = new Coord[size * size];
+    for (int i = 0; i < coords.length; i++)
+      coords[i] = new Coord(i % size, i / size);
+  }
+
+  /**
+   * Returns the number of tiles this table covers.
+   */
+  public int tiles() {
+    return coords.length;
+  }
+
+  /**
+   * Returns the index of the given coordinate.
+   */
+  public int index(Coord coord) {
+    return coord.getY() * size + coord.getX();
+  }
+
+  /**
+   * Returns the coordinate of the given index.
+   */
+  public Coord coord(int index) {
+    return coords[index];
+  }
+
+  /**
+   * Returns the number of neighbors of tile i.
+   */
+  public int degree(int i) {
+    return start[i + 1] - start[i];
+  }
+
+  /**
+   * Returns the kth neighbor of tile i.
+   */
+  public int neighbor(int i, int k) {
+    return target[start[i] + k];
+  }
+}
@@ -0,0 +1,158 @@
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Measures how many bytes each flood function allocates, using the per-thread allocation
+ * counter of com.sun.management.ThreadMXBean, and guards against regressions.
+ *
+ * For every flood function in Board (found by reflection, as in Game.batchTest()) and every
+ * board size, plays the same seeded autoplay games and records the bytes allocated per
+ * flood, per suggest and per whole game (board construction included). The results are
+ * compared against a baseline file; a metric that grew by more than the threshold is a
+ * regression, and main exits with status 1.
+ *
+ * Usage: AllocationHarness [--record] [thresholdPercent]
+ *   --record writes the current results as the new baseline.
+ */
+
+public class AllocationHarness {
+  private static final int[] SIZES = { 4, 8, Constants.DEFAULT_SIZE };
+  private static final int GAMES = 20, WARMUP_GAMES = 20;
+  private static final long SEED = 34;
+  private static final double SLACK_BYTES = 16;  // ignore differences below this, per metric
+
+  private static final com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  /**
+   * Returns the number of bytes allocated so far by the current thread.
+   */
+  private static long allocated() {
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Allocation totals for one flood function on one board size.
+   */
+  private static class Totals {
+    long moves, floodBytes, suggestBytes, gameBytes;
+    int games;
+  }
+
+  /**
+   * Returns the flood functions of Board, in the order flood, flood1, flood2, ...
+   */
+  static List<Method> floodFunctions() {
+    List<Method> methods = new ArrayList<>();
+    try {
+      for (int k = 0; ; k++)
+        methods.add(Board.class.getDeclaredMethod("flood" + (k == 0 ? "" : k), WaterColor.class));
+    }
+    catch (NoSuchMethodException e) {
+      // All done! No more flood functions left to try.
+    }
+    return methods;
+  }
+
+  /**
+   * Plays seeded autoplay games with the given flood function and returns the totals.
+   */
+  private static Totals measure(MethodHandle flood, int size, int games) throws Throwable {
+    Totals totals = new Totals();
+    int cap = 10 * Game.stepLimit(size);
+    for (int g = 0; g < games; g++) {
+      long gameStart = allocated();
+      Board board = new Board(size, new Random(SEED * 1_000_003 + g));
+      for (int moves = 0; !board.fullyFlooded() && moves < cap; moves++) {
+        long t0 = allocated();
+        WaterColor color = board.suggest();
+        long t1 = allocated();
+        flood.invokeExact(board, color);
+        long t2 = allocated();
+        totals.suggestBytes += t1 - t0;
+        totals.floodBytes += t2 - t1;
+        totals.moves++;
+      }
+      totals.gameBytes += allocated() - gameStart;
+      totals.games++;
+    }
+    return totals;
+  }
+
+  public static void main(String... args) throws Throwable {
+    boolean record = args.length > 0 && args[0].equals("--record");
+    double threshold = Double.parseDouble(args.length > (record ? 1 : 0) ? args[record ? 1 : 0] : "10") / 100;
+    if (!threads.isThreadAllocatedMemorySupported()) {
+      System.out.println("This JVM does not report per-thread allocation.");
+      return;
+    }
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    Path file = Paths.get(Constants.ALLOCATION_BASELINE);
+    Properties baseline = new Properties();
+    if (Files.exists(file))
+      try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        baseline.load(in);
+      }
+    Properties current = new Properties();
+    List<String> regressions = new ArrayList<>();
+
+    System.out.println("variant\tsize\tmoves\tflood B/move\tsuggest B/move\tB/game\tvs baseline");
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    for (Method method : floodFunctions()) {
+      MethodHandle flood = lookup.unreflect(method);
+      for (int size : SIZES) {
+        measure(flood, size, WARMUP_GAMES);  // let the JIT settle so escape analysis is stable
+        Totals t = measure(flood, size, GAMES);
+        double[] metrics = { (double) t.floodBytes / t.moves, (double) t.suggestBytes / t.moves,
+            (double) t.gameBytes / t.games };
+        String[] names = { "floodPerMove", "suggestPerMove", "perGame" };
+        StringBuilder verdict = new StringBuilder();
+        for (int m = 0; m < metrics.length; m++) {
+          String key = method.getName() + "." + size + "." + names[m];
+          current.setProperty(key, String.format("%.1f", metrics[m]));
+          String old = baseline.getProperty(key);
+          if (old == null)
+            continue;
+          double before = Double.parseDouble(old);
+          double change = before == 0 ? 0 : (metrics[m] - before) / before;
+          verdict.append(String.format(" %s %+.1f%%", names[m], 100 * change));
+          if (metrics[m] - before > SLACK_BYTES && metrics[m] > before * (1 + threshold))
+            regressions.add(String.format("%s: %.1f -> %.1f bytes (%+.1f%%)", key, before, metrics[m], 100 * change));
+        }
+        System.out.printf("%s\t%d\t%d\t%.1f\t%.1f\t%.0f\t%s%n", method.getName(), size, t.moves,
+            metrics[0], metrics[1], metrics[2], verdict.length() == 0 ? "no baseline" : verdict.toString().trim());
+      }
+    }
+
+    if (record) {
+      try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+        out.write("# Bytes allocated per flood function and board size, written by AllocationHarness --record\n");
+        for (String key : new TreeSet<>(current.stringPropertyNames()))
+          out.write(key + "=" + current.getProperty(key) + "\n");
+      }
+      System.out.println("Baseline written to " + file);
+      return;
+    }
+    if (!regressions.isEmpty()) {
+      System.out.println("Allocation regressions above " + Math.round(100 * threshold) + "%:");
+      for (String r : regressions)
+        System.out.println("  " + r);
+      System.exit(1);
+    }
+    System.out.println("No allocation regressions above " + Math.round(100 * threshold) + "%.");
+  }
+}
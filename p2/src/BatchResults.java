@@ -0,0 +1,322 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent, append-only store of Game.batchTest() results, and a comparison of two
+ * runs that flags statistically significant slowdowns.
+ *
+ * Every run appends one tab-separated line per flood function and board size: the run id,
+ * when it ran, the JVM, the number of cores, the git commit, the seed, the flood function,
+ * the board size, and the number, mean and standard deviation of the game times in
+ * nanoseconds. Two runs are compared with Welch's t-test per flood function and size; a
+ * difference is significant when the two-sided p-value is below Constants.SIGNIFICANCE.
+ *
+ * Usage: BatchResults list
+ *        BatchResults compare baselineRun [run]   (the latest run by default)
+ */
+
+public class BatchResults {
+  private static final String HEADER = "#run\ttime\tjvm\tcores\tcommit\tseed\tvariant\tsize\tgames\tmeanNanos\tsdNanos";
+
+  private final Path file;
+
+  /**
+   * The summary of the game times of one flood function on one board size.
+   */
+  public static class Sample {
+    public final String variant;
+    public final int size;
+    public final int games;
+    public final double mean, sd;
+
+    public Sample(String variant, int size, int games, double mean, double sd) {
+      this.variant = variant;
+      this.size = size;
+      this.games = games;
+      this.mean = mean;
+      this.sd = sd;
+    }
+
+    /**
+     * Summarizes the given game times, in nanoseconds.
+     */
+    public static Sample of(String variant, int size, List<Long> nanos) {
+      double mean = 0, squares = 0;
+      for (long t : nanos)
+        mean += t;
+      mean /= nanos.size();
+      for (long t : nanos)
+        squares += (t - mean) * (t - mean);
+      double sd = nanos.size() < 2 ? 0 : Math.sqrt(squares / (nanos.size() - 1));
+      return new Sample(variant, size, nanos.size(), mean, sd);
+    }
+
+    String key() {
+      return variant + "@" + size;
+    }
+  }
+
+  /**
+   * One batch run: its environment and its samples, in the order they were taken.
+   */
+  public static class Run {
+    public final String id, time, jvm, commit;
+    public final int cores;
+    public final long seed;
+    public final List<Sample> samples = new ArrayList<>();
+
+    public Run(String id, String time, String jvm, int cores, String commit, long seed) {
+      this.id = id;
+      this.time = time;
+      this.jvm = jvm;
+      this.cores = cores;
+      this.commit = commit;
+      this.seed = seed;
+    }
+
+    /**
+     * Starts a run in the current environment with the given seed.
+     */
+    public static Run start(long seed) {
+      LocalDateTime now = LocalDateTime.now();
+      return new Run(now.format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")),
+          now.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+          System.getProperty("java.vm.name") + " " + System.getProperty("java.version"),
+          Runtime.getRuntime().availableProcessors(), commit(), seed);
+    }
+
+    public String toString() {
+      return id + "\t" + time + "\t" + jvm + "\t" + cores + " cores\t" + commit + "\tseed " + seed
+          + "\t" + samples.size() + " samples";
+    }
+  }
+
+  /**
+   * Opens (or starts) the store in the given file.
+   */
+  public BatchResults(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Opens (or starts) the store in Constants.BATCH_RESULTS.
+   */
+  public BatchResults() {
+    this(Paths.get(Constants.BATCH_RESULTS));
+  }
+
+  /**
+   * Appends the given run to the store. Throws IllegalArgumentException if a run with the
+   * same id is stored already, so that find() stays unambiguous.
+   */
+  public synchronized void append(Run run) throws IOException {
+    if (find(run.id) != null)
+      throw new IllegalArgumentException("run " + run.id + " is already in " + file);
+    boolean fresh = !Files.exists(file);
+    try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+      if (fresh) {
+        out.write(HEADER);
+        out.newLine();
+      }
+      for (Sample s : run.samples) {
+        out.write(String.join("\t", run.id, run.time, run.jvm, Integer.toString(run.cores), run.commit,
+            Long.toString(run.seed), s.variant, Integer.toString(s.size), Integer.toString(s.games),
+            String.format("%.0f", s.mean), String.format("%.0f", s.sd)));
+        out.newLine();
+      }
+    }
+  }
+
+  /**
+   * Returns every stored run, oldest first.
+   */
+  public List<Run> load() throws IOException {
+    Map<String, Run> runs = new LinkedHashMap<>();
+    if (!Files.exists(file))
+      return new ArrayList<>();
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+      if (line.startsWith("#") || line.trim().isEmpty())
+        continue;
+      String[] f = line.split("\t");
+      if (f.length != 11)
+        continue;
+      Run run = runs.computeIfAbsent(f[0],
+          id -> new Run(id, f[1], f[2], Integer.parseInt(f[3]), f[4], Long.parseLong(f[5])));
+      run.samples.add(new Sample(f[6], Integer.parseInt(f[7]), Integer.parseInt(f[8]),
+          Double.parseDouble(f[9]), Double.parseDouble(f[10])));
+    }
+    return new ArrayList<>(runs.values());
+  }
+
+  /**
+   * Returns the stored run with the given id, or null if there is none.
+   */
+  public Run find(String id) throws IOException {
+    for (Run run : load())
+      if (run.id.equals(id))
+        return run;
+    return null;
+  }
+
+  /**
+   * Prints, for every flood function and size measured in both runs, the change from the
+   * baseline run to the current run and its significance. Returns the lines describing
+   * significant slowdowns.
+   */
+  public static List<String> compare(Run baseline, Run current) {
+    System.out.println("Comparing run " + current.id + " (" + current.commit + ") against baseline "
+        + baseline.id + " (" + baseline.commit + ")");
+    if (!baseline.jvm.equals(current.jvm) || baseline.cores != current.cores)
+      System.out.println("Warning: the runs differ in environment: " + baseline.jvm + ", " + baseline.cores
+          + " cores vs " + current.jvm + ", " + current.cores + " cores");
+    Map<String, Sample> before = new LinkedHashMap<>();
+    for (Sample s : baseline.samples)
+      before.put(s.key(), s);
+    List<String> regressions = new ArrayList<>();
+    System.out.println("variant\tsize\tbaseline(ms)\tcurrent(ms)\tchange\tp\tverdict");
+    for (Sample now : current.samples) {
+      Sample then = before.get(now.key());
+      if (then == null)
+        continue;
+      double p = welchP(then, now);
+      double change = then.mean == 0 ? 0 : (now.mean - then.mean) / then.mean;
+      String verdict = p >= Constants.SIGNIFICANCE ? "same" : change > 0 ? "SLOWER" : "faster";
+      String line = String.format("%s\t%d\t%.3f\t%.3f\t%+.1f%%\t%.4f\t%s", now.variant, now.size,
+          then.mean / 1e6, now.mean / 1e6, 100 * change, p, verdict);
+      System.out.println(line);
+      if (verdict.equals("SLOWER"))
+        regressions.add(line);
+    }
+    return regressions;
+  }
+
+  /**
+   * Returns the two-sided p-value of Welch's t-test for a difference between the means of
+   * the two samples.
+   */
+  static double welchP(Sample a, Sample b) {
+    if (a.games < 2 || b.games < 2)
+      return 1;
+    double va = a.sd * a.sd / a.games, vb = b.sd * b.sd / b.games;
+    if (va + vb == 0)
+      return a.mean == b.mean ? 1 : 0;
+    double t = (a.mean - b.mean) / Math.sqrt(va + vb);
+    double df = (va + vb) * (va + vb) / (va * va / (a.games - 1) + vb * vb / (b.games - 1));
+    // P(|T| > t) for Student's t with df degrees of freedom.
+    return incompleteBeta(df / (df + t * t), df / 2, 0.5);
+  }
+
+  /**
+   * Returns the regularized incomplete beta function I_x(a, b), evaluated with its
+   * continued fraction (Numerical Recipes, section 6.4).
+   */
+  static double incompleteBeta(double x, double a, double b) {
+    if (x <= 0)
+      return 0;
+    if (x >= 1)
+      return 1;
+    double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+    if (x < (a + 1) / (a + b + 2))
+      return front * betaFraction(x, a, b) / a;
+    return 1 - front * betaFraction(1 - x, b, a) / b;
+  }
+
+  private static double betaFraction(double x, double a, double b) {
+    final double tiny = 1e-300;
+    double c = 1, d = 1 - (a + b) * x / (a + 1);
+    d = 1 / (Math.abs(d) < tiny ? tiny : d);
+    double h = d;
+    for (int m = 1; m <= 200; m++) {
+      for (int odd = 0; odd < 2; odd++) {
+        double num = odd == 0 ? m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m))
+            : -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+        d = 1 + num * d;
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        c = 1 + num / c;
+        if (Math.abs(c) < tiny)
+          c = tiny;
+        h *= d * c;
+      }
+      if (Math.abs(d * c - 1) < 1e-12)
+        break;
+    }
+    return h;
+  }
+
+  /**
+   * Returns the log of the gamma function (Lanczos approximation).
+   */
+  private static double logGamma(double x) {
+    double[] g = { 76.18009172947146, -86.50532032941677, 24.01409824083091, -1.231739572450155,
+        0.1208650973866179e-2, -0.5395239384953e-5 };
+    double y = x, tmp = x + 5.5;
+    tmp -= (x + 0.5) * Math.log(tmp);
+    double series = 1.000000000190015;
+    for (double coefficient : g)
+      series += coefficient / ++y;
+    return -tmp + Math.log(2.5066282746310005 * series / x);
+  }
+
+  /**
+   * Returns the abbreviated git commit of the working directory, or "unknown".
+   */
+  private static String commit() {
+    try {
+      Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+      String line;
+      try (BufferedReader in = new BufferedReader(new InputStreamReader(git.getInputStream(), StandardCharsets.UTF_8))) {
+        line = in.readLine();
+      }
+      if (git.waitFor(5, TimeUnit.SECONDS) && git.exitValue() == 0 && line != null)
+        return line.trim();
+    }
+    catch (IOException e) {
+      // No git here.
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return "unknown";
+  }
+
+  public static void main(String... args) throws IOException {
+    BatchResults results = new BatchResults();
+    List<Run> runs = results.load();
+    if (args.length == 0 || args[0].equals("list")) {
+      for (Run run : runs)
+        System.out.println(run);
+      return;
+    }
+    if (!args[0].equals("compare") || args.length < 2 || runs.isEmpty()) {
+      System.out.println("Usage: BatchResults list | compare baselineRun [run]");
+      return;
+    }
+    Run baseline = results.find(args[1]);
+    Run current = args.length > 2 ? results.find(args[2]) : runs.get(runs.size() - 1);
+    if (baseline == null || current == null) {
+      System.out.println("No such run: " + (baseline == null ? args[1] : args[2]));
+      return;
+    }
+    List<String> regressions = compare(baseline, current);
+    if (!regressions.isEmpty()) {
+      System.out.println(regressions.size() + " significant slowdowns.");
+      System.exit(1);
+    }
+    System.out.println("No significant slowdowns.");
+  }
+}
@@ -0,0 +1,233 @@
+import java.util.Random;
+
+/**
+ * Plays 64 games of the same board size in lock step, one game per bit of a long.
+ *
+ * The state is stored transposed: for every tile there is one long per color whose bit g
+ * is set when the tile has that color in game g, and one long whose bit g is set when the
+ * tile is flooded in game g. A move gives each game its own color (the select masks), and
+ * one sweep over the tiles with a handful of bitwise operations per tile advances all 64
+ * floods at once. Sweeps alternate direction and repeat until nothing changes.
+ *
+ * Every game plays the "widest frontier" rule: the color of the most outside tiles that
+ * touch the flooded region, ties to the lowest color id. The 64 per-game counts are kept
+ * in bit-sliced counters (bit k of every game's count in one long), so counting and
+ * comparing them is bitwise as well. frontierMove() is the same rule on a single Board,
+ * for the one-board-at-a-time path.
+ */
+
+public class BitLaneBoards {
+  public static final int LANES = 64;
+
+  private final int size, colorCount, counterBits;
+  private final Adjacency adj;
+  private final long[][] colors;  // [color][tile]: the games in which the tile has the color
+  private final long[] flooded;   // [tile]: the games in which the tile is flooded
+  private final int[] moves = new int[LANES];
+  private long active;            // the games not fully flooded yet
+
+  /**
+   * Loads the given boards, one per lane (at most LANES, all of the same size and palette).
+   */
+  public BitLaneBoards(Board... boards) {
+    if (boards.length == 0 || boards.length > LANES)
+      throw new IllegalArgumentException("between 1 and " + LANES + " boards: " + boards.length);
+    size = boards[0].getSize();
+    colorCount = boards[0].getPalette().size();
+    adj = Topology.SQUARE4.adjacency(size);
+    int n = size * size;
+    colors = new long[colorCount][n];
+    flooded = new long[n];
+    counterBits = 64 - Long.numberOfLeadingZeros(n);
+    for (int g = 0; g < boards.length; g++) {
+      Board board = boards[g];
+      if (board.getSize() != size || board.getTopology() != Topology.SQUARE4)
+        throw new IllegalArgumentException("all boards must be square boards of size " + size);
+      for (int i = 0; i < n; i++) {
+        colors[board.colorAt(i)][i] |= 1L << g;
+        if (board.isFlooded(i))
+          flooded[i] |= 1L << g;
+      }
+      if (!board.fullyFlooded())
+        active |= 1L << g;
+    }
+  }
+
+  /**
+   * Returns the number of moves game g has played.
+   */
+  public int moves(int g) {
+    return moves[g];
+  }
+
+  /**
+   * Returns the games that are fully flooded.
+   */
+  public long finished() {
+    return ~active;
+  }
+
+  /**
+   * Plays every game to the end (or until cap moves) and returns the number of moves
+   * played in the longest game.
+   */
+  public int playAll(int cap) {
+    int turns = 0;
+    long[] select = new long[colorCount];
+    while (active != 0 && turns < cap) {
+      chooseFrontierMoves(select);
+      flood(select);
+      turns++;
+    }
+    return turns;
+  }
+
+  /**
+   * Floods every active game g with the color c whose select[c] has bit g set.
+   */
+  public void flood(long[] select) {
+    int n = flooded.length;
+    boolean changed = true;
+    for (int sweep = 0; changed; sweep++) {
+      changed = false;
+      for (int k = 0; k < n; k++) {
+        int i = (sweep & 1) == 0 ? k : n - 1 - k;
+        long open = ~flooded[i] & active;
+        if (open == 0)
+          continue;
+        long match = 0;
+        for (int c = 0; c < colorCount; c++)
+          match |= colors[c][i] & select[c];
+        match &= open;
+        if (match == 0)
+          continue;
+        long reached = 0;
+        for (int e = adj.start[i]; e < adj.start[i + 1]; e++)
+          reached |= flooded[adj.target[e]];
+        if ((match & reached) != 0) {
+          flooded[i] |= match & reached;
+          changed = true;
+        }
+      }
+    }
+    long still = 0;
+    for (int i = 0; i < n; i++)
+      still |= ~flooded[i];
+    for (long rest = active; rest != 0; rest &= rest - 1)
+      moves[Long.numberOfTrailingZeros(rest)]++;
+    active &= still;
+  }
+
+  /**
+   * Sets select[c] to the active games whose widest frontier is color c.
+   */
+  void chooseFrontierMoves(long[] select) {
+    // counts[c][b]: bit b of every game's count of frontier tiles of color c.
+    long[][] counts = new long[colorCount][counterBits];
+    for (int i = 0; i < flooded.length; i++) {
+      long open = ~flooded[i] & active;
+      if (open == 0)
+        continue;
+      long reached = 0;
+      for (int e = adj.start[i]; e < adj.start[i + 1]; e++)
+        reached |= flooded[adj.target[e]];
+      long frontier = open & reached;
+      for (int c = 0; frontier != 0 && c < colorCount; c++) {
+        long carry = frontier & colors[c][i];
+        for (int b = 0; carry != 0; b++) {
+          long overflow = counts[c][b] & carry;
+          counts[c][b] ^= carry;
+          carry = overflow;
+        }
+      }
+    }
+    // Keep the running maximum per game; a strictly greater count takes over the lane.
+    long[] best = counts[0].clone();
+    select[0] = active;
+    for (int c = 1; c < colorCount; c++) {
+      long greater = 0, equal = -1L;
+      for (int b = counterBits - 1; b >= 0; b--) {
+        greater |= equal & counts[c][b] & ~best[b];
+        equal &= ~(counts[c][b] ^ best[b]);
+      }
+      for (int b = 0; b < counterBits; b++)
+        best[b] = (counts[c][b] & greater) | (best[b] & ~greater);
+      for (int p = 0; p < c; p++)
+        select[p] &= ~greater;
+      select[c] = greater & active;
+    }
+  }
+
+  /**
+   * Returns the widest-frontier color id for the given board: the color of the most
+   * outside tiles that touch the flooded region, ties to the lowest id.
+   */
+  public static int frontierMove(Board board) {
+    Adjacency adj = board.getTopology().adjacency(board.getSize());
+    int[] count = new int[board.getPalette().size()];
+    for (int i = 0; i < adj.tiles(); i++) {
+      if (board.isFlooded(i))
+        continue;
+      for (int e = adj.start[i]; e < adj.start[i + 1]; e++)
+        if (board.isFlooded(adj.target[e])) {
+          count[board.colorAt(i)]++;
+          break;
+        }
+    }
+    int best = 0;
+    for (int c = 1; c < count.length; c++)
+      if (count[c] > count[best])
+        best = c;
+    return best;
+  }
+
+  /**
+   * Plays the same seeded games one board at a time and 64 boards at a time, checks that
+   * both take the same number of moves in every game, and reports games per second and
+   * the mean time per game, as Game.autoPlay() measures it.
+   *
+   * Usage: BitLaneBoards [size [games]]
+   */
+  public static void main(String... args) {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : Constants.DEFAULT_SIZE;
+    int games = args.length > 1 ? Integer.parseInt(args[1]) : 64 * 500;
+    games = Math.max(LANES, games / LANES * LANES);
+    int cap = 10 * Game.stepLimit(size);
+    int[] scalarMoves = new int[games];
+    for (int round = 0; round < 2; round++) {  // the first round warms up the JIT
+      long start = System.nanoTime();
+      for (int g = 0; g < games; g++) {
+        Board board = new Board(size, new Random(41L * 1_000_003 + g));
+        int moves = 0;
+        while (!board.fullyFlooded() && moves < cap) {
+          board.flood(frontierMove(board));
+          moves++;
+        }
+        scalarMoves[g] = moves;
+      }
+      double scalar = (System.nanoTime() - start) / 1e9;
+
+      start = System.nanoTime();
+      int mismatches = 0;
+      for (int first = 0; first < games; first += LANES) {
+        Board[] boards = new Board[LANES];
+        for (int g = 0; g < LANES; g++)
+          boards[g] = new Board(size, new Random(41L * 1_000_003 + first + g));
+        BitLaneBoards lanes = new BitLaneBoards(boards);
+        lanes.playAll(cap);
+        for (int g = 0; g < LANES; g++)
+          if (lanes.moves(g) != scalarMoves[first + g])
+            mismatches++;
+      }
+      double batched = (System.nanoTime() - start) / 1e9;
+      if (round == 0)
+        continue;
+      System.out.println("size " + size + ", " + games + " games, widest-frontier moves");
+      System.out.printf("one board at a time:  %.0f games/s (%.3f ms/game)%n", games / scalar, 1e3 * scalar / games);
+      System.out.printf("64 boards per long:   %.0f games/s (%.3f ms/game), %.2fx%n", games / batched,
+          1e3 * batched / games, scalar / batched);
+      System.out.println(mismatches == 0 ? "Both paths played every game identically."
+          : mismatches + " games differ between the two paths!");
+    }
+  }
+}
@@ -1,20 +1,42 @@
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 /**
  * A Board represents the current state of the game. Boards know their dimension, 
  * the collection of tiles that are inside the current flooded region, and those tiles 
  * that are on the outside.
  * 
+ * The state is kept in primitive arrays indexed by y * size + x: the color of every tile, 
+ * whether it is flooded, and the list of flooded tiles. Tiles of the flooded region all 
+ * have the region color. Tile objects are only created when asked for through get().
+ * 
  * @author <Sergio Perez>
  */
 
 public class Board {
-  private Map<Coord, Tile> inside, outside;
+  private byte[] colors;      // the color of each outside tile (stale for flooded tiles)
+  private boolean[] flooded;  // whether each tile is inside the flooded region
+  private int[] region;       // the flooded tiles, in the order they were absorbed
+  private int floodedCount;
+  private int regionColor;
+  private Tile[] views;       // Tile views handed out by get(), created on demand
   private int size;
-  int blue = 0, cyan = 0, pink = 0, red = 0, yellow = 0;
+  private Palette palette;
+  private Topology topology;
+  private Adjacency adj;
+  int[] counts;  // per color id, the perimeter counts kept for suggest()
+  private int[] remaining;  // per color id, the number of outside tiles of that color; null until asked for
+  private long fingerprint;
+  private boolean fingerprinted;  // false once a flood variant changed the board without updating fingerprint
+  private int[] visited, reached, reachedColors, queue;  // scratch space for gains()
+  private int epoch;  // marks the entries of visited and reached written by the current gains() call
+  private int[] distance;  // per tile, the moves needed to absorb it; null until asked for
+  private int[] distanceCounts;  // per distance, the number of tiles at it
+  private int farthest;  // the largest distance of any tile
+  private int[] level, nextLevel;  // scratch space for the distance search
+  private List<BoardListener> listeners;  // not copied with the board
   
   /**
    * Constructs a square game board of the given size, initializes the list of 
@@ -22,28 +44,191 @@ public class Board {
    * all the other tiles in the outside list.
    */
   public Board(int size) {
-    // A tile is either inside or outside the current flooded region.
-    inside = new HashMap<>();
-    outside = new HashMap<>();
+    this(size, new Random());
+  }
+
+  /**
+   * Constructs a square game board of the given size whose colors are drawn from the
+   * given generator, so that equally seeded generators give identical boards.
+   */
+  public Board(int size, Random gen) {
+    this(size, Palette.DEFAULT, gen);
+  }
+
+  /**
+   * Constructs a square game board of the given size whose colors are drawn from the
+   * given palette using the given generator.
+   */
+  public Board(int size, Palette palette, Random gen) {
+    this(size, palette, Topology.SQUARE4, gen);
+  }
+
+  /**
+   * Constructs a game board of the given size and topology whose colors are drawn from
+   * the given palette using the given generator.
+   */
+  public Board(int size, Palette palette, Topology topology, Random gen) {
+    this(size, palette, topology);
+    for (int i = 0; i < colors.length; i++)
+      colors[i] = (byte) palette.pickOne(gen);
+    start();
+  }
+
+  /**
+   * Constructs a game board of the given size and topology with the given tile color ids,
+   * in row-major order (y * size + x).
+   */
+  public Board(int size, Palette palette, Topology topology, int[] tileColors) {
+    this(size, palette, topology);
+    if (tileColors.length != colors.length)
+      throw new IllegalArgumentException(colors.length + " tile colors expected, got " + tileColors.length);
+    for (int i = 0; i < colors.length; i++) {
+      if (tileColors[i] < 0 || tileColors[i] >= palette.size())
+        throw new IllegalArgumentException("no color " + tileColors[i] + " in " + palette);
+      colors[i] = (byte) tileColors[i];
+    }
+    start();
+  }
+
+  /**
+   * Sets up an empty board of the given size and topology; the constructors above then
+   * fill in the tile colors and call start().
+   */
+  private Board(int size, Palette palette, Topology topology) {
     this.size = size;
-    for (int y = 0; y < size; y++)
-      for (int x = 0; x < size; x++) {
-        Coord coord = new Coord(x, y);
-        outside.put(coord, new Tile(coord));
-      }
-    // Move the corner tile into the flooded region and run flood on its color.
-    Tile corner = outside.remove(Coord.ORIGIN);
-    inside.put(Coord.ORIGIN, corner);
-    flood(corner.getColor());
+    this.palette = palette;
+    this.topology = topology;
+    adj = topology.adjacency(size);
+    counts = new int[palette.size()];
+    int n = size * size;
+    // A tile is either inside or outside the current flooded region.
+    colors = new byte[n];
+    flooded = new boolean[n];
+    region = new int[n];
   }
-  
+
+  /**
+   * Moves the corner tile into the flooded region and runs flood on its color.
+   */
+  private void start() {
+    if (colors.length > 0) {
+      absorb(0);
+      regionColor = colors[0];
+    }
+    fingerprint = computeFingerprint();
+    fingerprinted = true;
+    flood(regionColor);
+  }
+
+  /**
+   * Constructs a copy of the given board. The state is copied, so floods on the copy
+   * leave the original untouched.
+   */
+  public Board(Board that) {
+    size = that.size;
+    palette = that.palette;
+    topology = that.topology;
+    adj = that.adj;
+    colors = that.colors.clone();
+    flooded = that.flooded.clone();
+    region = that.region.clone();
+    floodedCount = that.floodedCount;
+    regionColor = that.regionColor;
+    counts = that.counts.clone();
+    if (that.remaining != null)
+      remaining = that.remaining.clone();
+    fingerprint = that.fingerprint;
+    fingerprinted = that.fingerprinted;
+    if (that.distance != null) {
+      distance = that.distance.clone();
+      distanceCounts = that.distanceCounts.clone();
+      farthest = that.farthest;
+      level = new int[distance.length];
+      nextLevel = new int[distance.length];
+    }
+  }
+
   /**
-   * Returns the tile at the specified coordinate.
+   * Returns the tile at the specified coordinate, or null if the coordinate is not on
+   * this board. The tile is a view of this board: it always shows the tile's current
+   * color, and asking again for the same coordinate returns the same view.
    */ 
   public Tile get(Coord coord) {
-    if (outside.containsKey(coord))
-      return outside.get(coord);
-    return inside.get(coord);
+    if (coord.getX() < 0 || coord.getY() < 0 || coord.getX() >= size || coord.getY() >= size)
+      return null;
+    if (views == null)
+      views = new Tile[size * size];
+    int i = adj.index(coord);
+    if (views[i] == null)
+      views[i] = new TileView(i);
+    return views[i];
+  }
+
+  /**
+   * A read-only Tile backed by this board's arrays.
+   */
+  private class TileView extends Tile {
+    private final int index;
+
+    TileView(int index) {
+      super(adj.coords[index], 0);
+      this.index = index;
+    }
+
+    public int getColorId() {
+      return colorAt(index);
+    }
+
+    public void setColor(int color) {
+      throw new UnsupportedOperationException("tiles of a board change color through flood()");
+    }
+
+    public void setColor(WaterColor color) {
+      setColor(color.ordinal());
+    }
+  }
+
+  /**
+   * Returns the color id of the tile at the given index (y * size + x).
+   */
+  public int colorAt(int index) {
+    return flooded[index] ? regionColor : colors[index];
+  }
+
+  /**
+   * Returns the color id of the tile at the given coordinate.
+   */
+  public int colorAt(Coord coord) {
+    return colorAt(adj.index(coord));
+  }
+
+  /**
+   * Returns true iff the tile at the given index (y * size + x) is in the flooded region.
+   */
+  public boolean isFlooded(int index) {
+    return flooded[index];
+  }
+
+  /**
+   * Returns true iff the tile at the given coordinate is in the flooded region.
+   */
+  public boolean isFlooded(Coord coord) {
+    return flooded[adj.index(coord)];
+  }
+
+  /**
+   * Returns the index of the rth tile absorbed into the flooded region, for r less than
+   * floodedSize(); the corner tile comes first.
+   */
+  public int regionTile(int r) {
+    return region[r];
+  }
+
+  /**
+   * Returns the color id of the flooded region.
+   */
+  public int getRegionColor() {
+    return regionColor;
   }
   
   /**
@@ -53,17 +238,36 @@ public class Board {
     return size;
   }
   
+  /**
+   * Returns the palette this board is colored from.
+   */
+  public Palette getPalette() {
+    return palette;
+  }
+
+  /**
+   * Returns the topology of this board.
+   */
+  public Topology getTopology() {
+    return topology;
+  }
+
+  /**
+   * Returns the number of tiles in the current flooded region.
+   */
+  public int floodedSize() {
+    return floodedCount;
+  }
+
   /*
    *
    * 
    * Returns true iff all tiles on the board have the same color.
    * 
-   * Checks if the size of the outside of the flooded area is 0. If it is returns true.
+   * Checks if the flooded area covers every tile. If it does returns true.
    */
   public boolean fullyFlooded() {
-    if (outside.size() == 0)
-    	return true;
-    return false;
+    return floodedCount == flooded.length;
   }
   
   /*
@@ -72,63 +276,368 @@ public class Board {
    * Updates this board by changing the color of the current flood region 
    * and extending its reach.
    * 
-   * Starts off with changing the color of the origin tile. From there, for each coord c in the neighbors, 
-   * it sees if it is in the outside and also the same as the color selected. If it is the tile on
-   * the outside is removed and then out onto the inside of the flooded area with the selected color. 
+   * Recolors the flooded region by changing the region color. Then walks the list of flooded
+   * tiles and looks up their neighbors in the board's adjacency table; every outside neighbor of
+   * the selected color is marked flooded and appended to the list, so tiles reached through
+   * newly absorbed tiles are absorbed in the same move.
    */
 	public void flood(WaterColor color) {
+		flood(color.ordinal());
+	}
 
-		for (int y = 0; y < this.inside.size(); y++)
-			for (int x = 0; x < this.inside.size(); x++) {
-
-				Coord coord = new Coord(x, y);
-
-				if (this.inside.containsKey(coord)) {
+	/**
+	 * Same as flood(WaterColor), for boards colored from any palette.
+	 */
+	public void flood(int color) {
+		int oldColor = regionColor, from = floodedCount;
+		if (fingerprinted)
+			fingerprint ^= regionKey(regionColor) ^ regionKey(color);
+		regionColor = color;
+		for (int r = 0; r < floodedCount; r++) {
+			int i = region[r];
+			for (int e = adj.start[i]; e < adj.start[i + 1]; e++) {
+				int j = adj.target[e];
+				if (!flooded[j] && colors[j] == color) {
+					absorb(j);
+					if (fingerprinted)
+						fingerprint ^= tileKey(j, color) ^ tileKey(j, INSIDE);
+					// The absorbed color is now inside, so its perimeter count
+					// (used by suggest()) starts over.
+					counts[color] = 0;
+				}
+			}
+		}
+		if (distance != null)
+			lowerDistances(from);
+		fireChange(oldColor, from);
+	}
 
-					this.get(coord).setColor(color);
+	/**
+	 * Moves the tile at the given index into the flooded region.
+	 */
+	private void absorb(int i) {
+		flooded[i] = true;
+		region[floodedCount++] = i;
+		if (remaining != null)
+			remaining[colors[i]]--;
+	}
 
-					for (Coord c : coord.neighbors(this.size)) {
+	/**
+	 * Tells the listeners what the move that started with the given region color and
+	 * flooded size changed.
+	 */
+	private void fireChange(int oldColor, int from) {
+		if (listeners == null || listeners.isEmpty())
+			return;
+		BoardChange change = new BoardChange(size, oldColor, regionColor, Arrays.copyOfRange(region, from, floodedCount));
+		for (BoardListener listener : new ArrayList<>(listeners))
+			listener.boardChanged(this, change);
+	}
 
-						if (this.outside.containsKey(c) && this.outside.get(c).getColor().equals(color)) {
-
-							// Increases the count of the colors with relation
-							// to the how many neighbors at the given moment
-							// Utilized to help support the suggest() function.
-							WaterColor outerColor = this.outside.get(c).getColor();
-							if (outerColor.equals(WaterColor.BLUE))
-								blue++;
-							if (outerColor.equals(WaterColor.CYAN))
-								cyan++;
-							if (outerColor.equals(WaterColor.PINK))
-								pink++;
-							if (outerColor.equals(WaterColor.RED))
-								red++;
-							if (outerColor.equals(WaterColor.YELLOW))
-								yellow++;
-							
-							Tile tile = this.outside.remove(c);
-							this.inside.put(c, tile);
-							this.inside.get(c).setColor(color);
-
-							WaterColor innerColor = this.inside.get(c).getColor();
-							if (innerColor.equals(WaterColor.BLUE))
-								blue = 0;
-							if (innerColor.equals(WaterColor.CYAN))
-								cyan = 0;
-							if (innerColor.equals(WaterColor.PINK))
-								pink = 0;
-							if (innerColor.equals(WaterColor.RED))
-								red = 0;
-							if (innerColor.equals(WaterColor.YELLOW))
-								yellow = 0;
+	/**
+	 * Registers a listener to be told about every move made on this board.
+	 */
+	public void addListener(BoardListener listener) {
+		if (listeners == null)
+			listeners = new ArrayList<>();
+		listeners.add(listener);
+	}
 
-						}
-					}
-				}
-			}
+	/**
+	 * Unregisters the given listener.
+	 */
+	public void removeListener(BoardListener listener) {
+		if (listeners != null)
+			listeners.remove(listener);
 	}
   
-  
+  /**
+   * Returns a 64-bit fingerprint of the state of this board: its size, topology and palette,
+   * the colors of the outside tiles, which tiles are flooded, and the region color. Equal
+   * states have equal fingerprints, and different states collide with probability about
+   * 2^-64. flood() keeps the fingerprint up to date in O(1) per absorbed tile (Zobrist
+   * hashing); after the other flood variants it is recomputed on the next call.
+   */
+  public long fingerprint() {
+    if (!fingerprinted) {
+      fingerprint = computeFingerprint();
+      fingerprinted = true;
+    }
+    return fingerprint;
+  }
+
+  private static final int INSIDE = Palette.MAX_COLORS;  // the tile key of a flooded tile
+
+  private long computeFingerprint() {
+    long hash = mix(((long) size << 40) ^ ((long) topology.ordinal() << 32) ^ palette.size());
+    for (int i = 0; i < flooded.length; i++)
+      hash ^= flooded[i] ? tileKey(i, INSIDE) : tileKey(i, colors[i]);
+    return hash ^ regionKey(regionColor);
+  }
+
+  private static long tileKey(int index, int color) {
+    return mix(((long) index << 6) | color);
+  }
+
+  private static long regionKey(int color) {
+    return mix(-1L - color);
+  }
+
+  /**
+   * The SplitMix64 finalizer: spreads the bits of x over the whole long.
+   */
+  private static long mix(long x) {
+    x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+    x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+    return x ^ (x >>> 31);
+  }
+
+  /**
+   * Returns the number of moves needed to absorb the tile at the given index (y * size +
+   * x): 0 for a flooded tile, and otherwise the fewest color changes along a path from the
+   * region to the tile, counting the step out of the region as one. Following the colors of
+   * such a path absorbs the tile in that many moves, and no fewer moves can.
+   * 
+   * The field is computed on the first call, by a 0-1 breadth-first search (steps between
+   * outside tiles of the same color are free), and then kept up to date by flood(): a move
+   * only lowers distances, and only those of tiles reached best through the tiles it
+   * absorbed, so the search is resumed from those tiles alone.
+   */
+  public int distance(int index) {
+    if (distance == null)
+      computeDistances();
+    return distance[index];
+  }
+
+  /**
+   * Returns the number of moves needed to absorb the tile at the given coordinate.
+   */
+  public int distance(Coord coord) {
+    return distance(adj.index(coord));
+  }
+
+  /**
+   * Returns the largest distance of any tile: a lower bound on the number of moves left.
+   */
+  public int farthestDistance() {
+    if (distance == null)
+      computeDistances();
+    return farthest;
+  }
+
+  private void computeDistances() {
+    int n = flooded.length;
+    distance = new int[n];
+    distanceCounts = new int[n + 1];
+    level = new int[n];
+    nextLevel = new int[n];
+    Arrays.fill(distance, Integer.MAX_VALUE);  // every tile is reached, the board being connected
+    farthest = 0;
+    lowerDistances(0);
+  }
+
+  /**
+   * Sets the distance of the flooded tiles from region[from] on to 0, and lowers the
+   * distances of the outside tiles they lead to, level by level. Every tile enters a
+   * level's list only when its distance drops to that level, so the cost is proportional
+   * to the number of distances that change (and their neighbors).
+   */
+  private void lowerDistances(int from) {
+    int length = 0;
+    for (int r = from; r < floodedCount; r++) {
+      setDistance(region[r], 0);
+      level[length++] = region[r];
+    }
+    for (int d = 0; length > 0; d++) {
+      int nextLength = 0;
+      for (int k = 0; k < length; k++) {
+        int i = level[k];
+        if (distance[i] != d)
+          continue;  // lowered again since it was listed
+        for (int e = adj.start[i]; e < adj.start[i + 1]; e++) {
+          int j = adj.target[e];
+          if (flooded[j])
+            continue;
+          if (!flooded[i] && colors[j] == colors[i]) {
+            if (distance[j] > d) {
+              setDistance(j, d);
+              level[length++] = j;
+            }
+          }
+          else if (distance[j] > d + 1) {
+            setDistance(j, d + 1);
+            nextLevel[nextLength++] = j;
+          }
+        }
+      }
+      int[] swap = level;
+      level = nextLevel;
+      nextLevel = swap;
+      length = nextLength;
+    }
+    while (farthest > 0 && distanceCounts[farthest] == 0)
+      farthest--;
+  }
+
+  private void setDistance(int i, int d) {
+    if (distance[i] != Integer.MAX_VALUE)
+      distanceCounts[distance[i]]--;
+    distance[i] = d;
+    distanceCounts[d]++;
+    farthest = Math.max(farthest, d);
+  }
+
+  /**
+   * Returns the bitmask of the colors of all tiles outside the flooded region.
+   */
+  public int remainingColors() {
+    if (remaining == null)
+      countRemaining();
+    int mask = 0;
+    for (int c = 0; c < remaining.length; c++)
+      if (remaining[c] > 0)
+        mask |= 1 << c;
+    return mask;
+  }
+
+  /**
+   * Returns the number of tiles of the given color id outside the flooded region. The
+   * counts are taken on the first call and then kept up to date as tiles are absorbed.
+   */
+  public int remaining(int color) {
+    if (remaining == null)
+      countRemaining();
+    return remaining[color];
+  }
+
+  private void countRemaining() {
+    remaining = new int[palette.size()];
+    for (int i = 0; i < flooded.length; i++)
+      if (!flooded[i])
+        remaining[colors[i]]++;
+  }
+
+  /**
+   * Returns the number of distinct colors outside the flooded region. Every move removes
+   * at most one of them, so the board cannot be flooded in fewer moves.
+   */
+  public int remainingColorCount() {
+    return Integer.bitCount(remainingColors());
+  }
+
+  /**
+   * Returns the bitmask of the colors of the outside tiles that touch the flooded region,
+   * i.e., the colors that would grow the region if selected.
+   */
+  public int adjacentColors() {
+    int mask = 0;
+    for (int r = 0; r < floodedCount; r++) {
+      int i = region[r];
+      for (int e = adj.start[i]; e < adj.start[i + 1]; e++) {
+        int j = adj.target[e];
+        if (!flooded[j])
+          mask |= 1 << colors[j];
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Returns, per color id, the number of tiles a flood with that color would add to the
+   * flooded region. Same as gains(null).
+   */
+  public int[] gains() {
+    return gains(null);
+  }
+
+  /**
+   * Returns, per color id, the number of tiles a flood with that color would add to the
+   * flooded region, without changing or copying the board. If perimeter is not null, it
+   * receives per color id the number of outside tiles that would touch the region after
+   * that flood.
+   * 
+   * Every outside tile touching the region belongs to a connected group of one color, and
+   * a flood with that color absorbs exactly those groups. So one traversal of the groups
+   * that touch the region measures every move at once: each group adds its size to the
+   * gain of its color, and its outside neighbors of other colors to that color's perimeter.
+   */
+  public int[] gains(int[] perimeter) {
+    int n = flooded.length;
+    int[] gain = new int[palette.size()];
+    if (perimeter != null)
+      Arrays.fill(perimeter, 0, gain.length, 0);
+    if (visited == null) {
+      visited = new int[n];
+      reached = new int[n];
+      reachedColors = new int[n];
+      queue = new int[n];
+    }
+    if (++epoch == 0) {
+      // Wrapped around: old marks could be mistaken for new ones.
+      Arrays.fill(visited, 0);
+      Arrays.fill(reached, 0);
+      epoch = 1;
+    }
+    int boundary = 0;
+    int[] boundaryOfColor = new int[gain.length];
+    for (int r = 0; r < floodedCount; r++) {
+      int i = region[r];
+      for (int e = adj.start[i]; e < adj.start[i + 1]; e++) {
+        int seed = adj.target[e];
+        if (flooded[seed] || visited[seed] == epoch)
+          continue;
+        // Walk the group of seed's color that contains seed.
+        int color = colors[seed], head = 0, tail = 0;
+        visited[seed] = epoch;
+        queue[tail++] = seed;
+        while (head < tail) {
+          int j = queue[head++];
+          if (perimeter != null && touchesRegion(j)) {
+            boundary++;
+            boundaryOfColor[color]++;
+          }
+          for (int f = adj.start[j]; f < adj.start[j + 1]; f++) {
+            int k = adj.target[f];
+            if (flooded[k])
+              continue;
+            if (colors[k] == color) {
+              if (visited[k] != epoch) {
+                visited[k] = epoch;
+                queue[tail++] = k;
+              }
+            }
+            else if (perimeter != null && !touchesRegion(k)) {
+              // A new perimeter tile for this color, unless another group of it got there first.
+              if (reached[k] != epoch) {
+                reached[k] = epoch;
+                reachedColors[k] = 0;
+              }
+              if ((reachedColors[k] & 1 << color) == 0) {
+                reachedColors[k] |= 1 << color;
+                perimeter[color]++;
+              }
+            }
+          }
+        }
+        gain[color] += tail;
+      }
+    }
+    // Tiles already on the perimeter stay there unless the flood absorbs them.
+    if (perimeter != null)
+      for (int c = 0; c < gain.length; c++)
+        perimeter[c] += boundary - boundaryOfColor[c];
+    return gain;
+  }
+
+  /**
+   * Returns true iff the outside tile at the given index touches the flooded region.
+   */
+  private boolean touchesRegion(int j) {
+    for (int f = adj.start[j]; f < adj.start[j + 1]; f++)
+      if (flooded[adj.target[f]])
+        return true;
+    return false;
+  }
   
   
   /**
@@ -155,55 +664,57 @@ public class Board {
 	//flood1
 	
 	public void flood1(WaterColor color) {
-
-		for (Tile currentT : inside.values()) {
-			// System.out.println(currentT.getColor());
-			currentT.setColor(color);
-		}
-		for (int y = 0; y < this.inside.size(); y++)
-			for (int x = 0; x < this.inside.size(); x++) {
+		fingerprinted = false;
+		distance = null;
+		int oldColor = regionColor, from = floodedCount;
+
+		// Recoloring the region recolors every inside tile.
+		regionColor = color.ordinal();
+		for (int y = 0; y < this.floodedCount; y++)
+			for (int x = 0; x < this.floodedCount; x++) {
 				Coord coord = new Coord(x, y);
-				if (this.inside.containsKey(coord)) {
+				if (x < size && y < size && this.flooded[adj.index(coord)]) {
 
 					for (Coord c : coord.neighbors(this.size)) {
 						// System.out.print(coord.neighbors(this.size));
-						if (this.outside.containsKey(c) && this.outside.get(c).getColor().equals(color)) {
+						int j = adj.index(c);
+						if (!this.flooded[j] && this.colors[j] == color.ordinal()) {
 							// if(color.equals(this.outside.get(c).getColor())){
-							Tile tile = this.outside.remove(c);
-							this.inside.put(c, tile);
-							this.inside.get(c).setColor(color);
+							absorb(j);
 
 						}
 					}
 
 				}
 			}
+		fireChange(oldColor, from);
 	}
   
 	//flood2
 	public void flood2(WaterColor color) {
-		for (Tile currentT : inside.values()) {
-			// System.out.println(currentT.getColor());
-			currentT.setColor(color);
-		}
-		for (int y = 0; y < this.inside.size(); y++)
-			for (int x = 0; x < this.inside.size(); x++) {
+		fingerprinted = false;
+		distance = null;
+		int oldColor = regionColor, from = floodedCount;
+		// Recoloring the region recolors every inside tile.
+		regionColor = color.ordinal();
+		for (int y = 0; y < this.floodedCount; y++)
+			for (int x = 0; x < this.floodedCount; x++) {
 				Coord coord = new Coord(x, y);
-				if (this.inside.containsKey(coord)) {
+				if (x < size && y < size && this.flooded[adj.index(coord)]) {
 
 					for (Coord c : coord.neighbors(this.size)) {
-						//System.out.print(coord.neighbors(this.size));
-						if (this.outside.containsKey(c) && this.outside.get(c).getColor().equals(color)) {
+						// System.out.print(coord.neighbors(this.size));
+						int j = adj.index(c);
+						if (!this.flooded[j] && this.colors[j] == color.ordinal()) {
 							// if(color.equals(this.outside.get(c).getColor())){
-							Tile tile = this.outside.remove(c);
-							this.inside.put(c, tile);
-							this.inside.get(c).setColor(color);
+							absorb(j);
 
 						}
 					}
 
 				}
 			}
+		fireChange(oldColor, from);
 	}
   
   
@@ -223,49 +734,51 @@ public class Board {
    */
   
 	public WaterColor suggest() {
+		return WaterColor.of(suggestColor());
+	}
 
-		WaterColor initialSuggest = WaterColor.BLUE;
-		for (int y = 0; y < this.inside.size(); y++)
-			for (int x = 0; x < this.inside.size(); x++) {
-
-				Coord coord = new Coord(x, y);
-
-				if (this.inside.containsKey(coord)) {
-					//Tile currentT = this.inside.get(coord);
-
-					for (Coord c : coord.neighbors(this.size)) {
-						// WaterColor innerColor =
-						// this.inside.get(c).getColor();
-						if (this.outside.containsKey(c)) {
-							{
-								WaterColor outerColor = this.outside.get(c).getColor();
-								if (outerColor.equals(WaterColor.BLUE))
-									blue++;
-								if (outerColor.equals(WaterColor.CYAN))
-									cyan++;
-								if (outerColor.equals(WaterColor.PINK))
-									pink++;
-								if (outerColor.equals(WaterColor.RED))
-									red++;
-								if (outerColor.equals(WaterColor.YELLOW))
-									yellow++;
-								if ((blue > cyan) && (blue > pink) && (blue > red) && (blue > yellow))
-									initialSuggest = WaterColor.BLUE;
-								if ((cyan > pink) && (cyan > red) && (cyan > yellow) && (cyan > blue))
-									initialSuggest = WaterColor.CYAN;
-								if ((pink > red) && (pink > yellow) && (pink > blue) && (pink > cyan))
-									initialSuggest = WaterColor.PINK;
-								if ((red > yellow) && (red > blue) && (red > cyan) && (red > pink))
-									initialSuggest = WaterColor.RED;
-								if ((yellow > blue) && (yellow > cyan) && (yellow > pink) && (yellow > red))
-									initialSuggest = WaterColor.YELLOW;
-
-							}
-
-						}
+	/**
+	 * Same as suggest(), returning a color id, for boards colored from any palette (suggest()
+	 * throws IllegalArgumentException when the id is no WaterColor).
+	 *
+	 * Every perimeter tile bumps the count of its color, and the suggestion becomes the
+	 * color whose count is then strictly larger than all others. Only the bumped color
+	 * can become such a strict maximum, so it is enough to track the top count and how
+	 * many colors share it.
+	 */
+	public int suggestColor() {
+
+		int initialSuggest = 0;
+		int top = 0, topColor = 0, atTop = 0;
+		for (int i = 0; i < counts.length; i++)
+			if (counts[i] > top) {
+				top = counts[i];
+				topColor = i;
+				atTop = 1;
+			}
+			else if (counts[i] == top)
+				atTop++;
+
+		// Visit the flooded tiles in index (row-major) order.
+		for (int i = 0; i < flooded.length; i++) {
+			if (!flooded[i])
+				continue;
+			for (int e = adj.start[i]; e < adj.start[i + 1]; e++) {
+				int j = adj.target[e];
+				if (!flooded[j]) {
+					int outerColor = colors[j];
+					if (++counts[outerColor] > top) {
+						top = counts[outerColor];
+						topColor = outerColor;
+						atTop = 1;
 					}
+					else if (counts[outerColor] == top)
+						atTop++;
+					if (atTop == 1)
+						initialSuggest = topColor;
 				}
 			}
+		}
 
 		return initialSuggest;
 
@@ -279,9 +792,9 @@ public class Board {
     StringBuilder ans = new StringBuilder();
     for (int y = 0; y < size; y++) {
       for (int x = 0; x < size; x++) {
-        Coord curr = new Coord(x, y);
-        WaterColor color = get(curr).getColor();
-        ans.append(inside.containsKey(curr) ? color.toString().toUpperCase() : color);
+        int i = y * size + x;
+        String color = Palette.name(colorAt(i));
+        ans.append(flooded[i] ? color.toUpperCase() : color);
         ans.append("\t");
       }
       ans.append("\n");
@@ -0,0 +1,72 @@
+/**
+ * What one move changed on a Board: the region's color before and after the move, and the
+ * tiles the move absorbed into the flooded region, in the order they were absorbed.
+ * Tiles are given by index, y * size + x.
+ */
+
+public class BoardChange {
+  private final int size, oldColor, newColor;
+  private final int[] absorbed;
+
+  public BoardChange(int size, int oldColor, int newColor, int[] absorbed) {
+    this.size = size;
+    this.oldColor = oldColor;
+    this.newColor = newColor;
+    this.absorbed = absorbed;
+  }
+
+  /**
+   * Returns the color id of the flooded region before the move.
+   */
+  public int getOldColor() {
+    return oldColor;
+  }
+
+  /**
+   * Returns the color id of the flooded region after the move.
+   */
+  public int getNewColor() {
+    return newColor;
+  }
+
+  /**
+   * Returns true iff the move changed the color of the flooded region, and so of every
+   * tile in it.
+   */
+  public boolean isRecolored() {
+    return oldColor != newColor;
+  }
+
+  /**
+   * Returns true iff the move changed nothing.
+   */
+  public boolean isEmpty() {
+    return !isRecolored() && absorbed.length == 0;
+  }
+
+  /**
+   * Returns the number of tiles the move absorbed.
+   */
+  public int absorbedCount() {
+    return absorbed.length;
+  }
+
+  /**
+   * Returns the index of the kth absorbed tile.
+   */
+  public int absorbed(int k) {
+    return absorbed[k];
+  }
+
+  /**
+   * Returns the coordinate of the kth absorbed tile.
+   */
+  public Coord absorbedCoord(int k) {
+    return new Coord(absorbed[k] % size, absorbed[k] / size);
+  }
+
+  public String toString() {
+    return "BoardChange[" + Palette.name(oldColor) + " -> " + Palette.name(newColor) + ", "
+        + absorbed.length + " absorbed]";
+  }
+}
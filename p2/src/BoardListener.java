@@ -0,0 +1,7 @@
+/**
+ * Receives the changes made to a Board, one call per move, right after the move.
+ */
+
+public interface BoardListener {
+  void boardChanged(Board board, BoardChange change);
+}
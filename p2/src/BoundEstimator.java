@@ -0,0 +1,179 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Estimates how many moves a board needs by working on its region graph, where each
+ * node is a maximal connected group of same-colored tiles (the flooded region is the node
+ * holding the upper left corner) and nodes are linked when their tiles touch.
+ *
+ * The lower bound is the larger of two facts about that graph: a move absorbs at most one
+ * more layer of nodes, so no game is shorter than the BFS distance from the flooded node
+ * to the farthest node; and every color left outside the flooded node needs a move of
+ * its own. The upper bound is the length of a greedy rollout that always picks the color
+ * absorbing the most tiles, so a board can always be finished within it.
+ */
+
+public class BoundEstimator {
+  private final int lower, upper;
+
+  /**
+   * Computes the bounds for the current state of the given board.
+   */
+  public BoundEstimator(Board board) {
+    Adjacency adj = board.getTopology().adjacency(board.getSize());
+    int n = adj.tiles();
+    int colors = board.getPalette().size();
+
+    // Label the same-colored groups.
+    int[] color = new int[n];
+    for (int i = 0; i < n; i++)
+      color[i] = board.colorAt(i);
+    int[] node = new int[n];
+    Arrays.fill(node, -1);
+    int[] stack = new int[n];
+    int[] nodeColor = new int[n], nodeSize = new int[n];
+    int m = 0;
+    for (int s = 0; s < n; s++) {
+      if (node[s] >= 0)
+        continue;
+      int top = 0;
+      stack[top++] = s;
+      node[s] = m;
+      int count = 0;
+      while (top > 0) {
+        int i = stack[--top];
+        count++;
+        for (int e = adj.start[i]; e < adj.start[i + 1]; e++) {
+          int j = adj.target[e];
+          if (node[j] < 0 && color[j] == color[s]) {
+            node[j] = m;
+            stack[top++] = j;
+          }
+        }
+      }
+      nodeColor[m] = color[s];
+      nodeSize[m++] = count;
+    }
+
+    // Link the groups, in CSR form, visiting tiles sorted by group.
+    int[] byNode = new int[n], first = new int[m + 1];
+    for (int i = 0; i < n; i++)
+      first[node[i] + 1]++;
+    for (int k = 0; k < m; k++)
+      first[k + 1] += first[k];
+    int[] fill = Arrays.copyOf(first, m);
+    for (int i = 0; i < n; i++)
+      byNode[fill[node[i]]++] = i;
+    int[] start = new int[m + 1], link = new int[Math.max(1, adj.target.length)];
+    int[] seen = new int[m];
+    int e = 0;
+    for (int k = 0; k < m; k++) {
+      start[k] = e;
+      for (int t = first[k]; t < first[k + 1]; t++) {
+        int i = byNode[t];
+        for (int f = adj.start[i]; f < adj.start[i + 1]; f++) {
+          int other = node[adj.target[f]];
+          if (other != k && seen[other] != k + 1) {
+            seen[other] = k + 1;
+            link[e++] = other;
+          }
+        }
+      }
+    }
+    start[m] = e;
+
+    // Lower bound: BFS layers from the flooded group, and the colors left outside it.
+    int origin = node[0];
+    int[] dist = new int[m];
+    Arrays.fill(dist, -1);
+    dist[origin] = 0;
+    int head = 0, tail = 0, farthest = 0, outsideColors = 0;
+    stack[tail++] = origin;
+    while (head < tail) {
+      int k = stack[head++];
+      farthest = Math.max(farthest, dist[k]);
+      if (k != origin)
+        outsideColors |= 1 << nodeColor[k];
+      for (int f = start[k]; f < start[k + 1]; f++)
+        if (dist[link[f]] < 0) {
+          dist[link[f]] = dist[k] + 1;
+          stack[tail++] = link[f];
+        }
+    }
+    lower = Math.max(farthest, Integer.bitCount(outsideColors));
+
+    // Upper bound: greedy rollout on the group graph.
+    boolean[] flooded = new boolean[m], frontier = new boolean[m];
+    int[] border = new int[m];
+    int borderSize = 0, remaining = m - 1, moves = 0;
+    flooded[origin] = true;
+    for (int f = start[origin]; f < start[origin + 1]; f++) {
+      frontier[link[f]] = true;
+      border[borderSize++] = link[f];
+    }
+    int[] gain = new int[colors];
+    while (remaining > 0) {
+      Arrays.fill(gain, 0);
+      for (int b = 0; b < borderSize; b++)
+        gain[nodeColor[border[b]]] += nodeSize[border[b]];
+      int best = 0;
+      for (int c = 1; c < colors; c++)
+        if (gain[c] > gain[best])
+          best = c;
+      moves++;
+      // Absorb the border groups of the chosen color, and put their neighbors on the border.
+      // Groups touching an absorbed group never share its color, so the ones appended
+      // during this loop are all kept.
+      int kept = 0, size = borderSize;
+      for (int b = 0; b < size; b++) {
+        int k = border[b];
+        if (nodeColor[k] != best) {
+          border[kept++] = k;
+          continue;
+        }
+        flooded[k] = true;
+        remaining--;
+        for (int f = start[k]; f < start[k + 1]; f++) {
+          int j = link[f];
+          if (!flooded[j] && !frontier[j]) {
+            frontier[j] = true;
+            border[size++] = j;
+          }
+        }
+      }
+      borderSize = kept;
+    }
+    upper = moves;
+  }
+
+  /**
+   * Returns a number of moves that no player can beat on this board.
+   */
+  public int lowerBound() {
+    return lower;
+  }
+
+  /**
+   * Returns a number of moves within which this board can always be finished.
+   */
+  public int upperBound() {
+    return upper;
+  }
+
+  /**
+   * Simple testing: prints the bounds and the time taken to compute them for a few
+   * boards of each size, next to the fixed limit of the size that games used to have.
+   */
+  public static void main(String... args) {
+    for (int size : new int[] { 2, 6, 10, Constants.DEFAULT_SIZE, 30, Constants.MAX_DIM }) {
+      for (int seed = 0; seed < 3; seed++) {
+        Board board = new Board(size, new Random(seed));
+        long start = System.nanoTime();
+        BoundEstimator bounds = new BoundEstimator(board);
+        long micros = (System.nanoTime() - start) / 1000;
+        System.out.println("size " + size + ": " + bounds.lowerBound() + " <= moves <= " + bounds.upperBound()
+            + " (fixed limit " + Game.stepLimit(size) + ", " + micros + " us)");
+      }
+    }
+  }
+}
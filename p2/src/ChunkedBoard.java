@@ -0,0 +1,333 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A ChunkedBoard holds the same game state as a Board, but in primitive arrays that are
+ * split into square chunks of CHUNK x CHUNK tiles so that a flood can be propagated in
+ * parallel on a ForkJoinPool.
+ *
+ * A flood runs in rounds. In each round every dirty chunk floods locally (a depth-first
+ * search that never leaves the chunk), and marks a neighboring chunk dirty for the next
+ * round whenever it absorbs a tile on its border next to a tile of the selected color.
+ * Rounds repeat until no chunk is dirty, i.e., until the flood reaches a global fixpoint.
+ * Chunks only ever write to their own tiles, so the tasks of one round need no locking.
+ *
+ * Chunked boards take the colors of any palette, but only square boards
+ * (Topology.SQUARE4): the local searches step to the four orthogonal neighbors.
+ */
+
+public class ChunkedBoard {
+  /**
+   * The width (and height) of a chunk, in tiles.
+   */
+  public static final int CHUNK = 64;
+
+  private final int size, chunksPerSide;
+  private final byte[] colors;
+  private final boolean[] flooded;
+  private final int[] floodedInChunk;
+  private boolean[] dirty, nextDirty;
+  private final ForkJoinPool pool;
+  private byte regionColor;
+  private int floodedCount;
+
+  // Scratch stacks for the local searches, one per pool thread.
+  private static final ThreadLocal<int[]> stacks = ThreadLocal.withInitial(() -> new int[CHUNK * CHUNK]);
+
+  /**
+   * Constructs a chunked board with the same colors as the given board, flooded from
+   * its upper left corner and using the common pool for parallel floods.
+   */
+  public ChunkedBoard(Board board) {
+    this(board, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a chunked board with the same colors as the given board, flooded from
+   * its upper left corner and using the given pool for parallel floods. The board must be
+   * square (Topology.SQUARE4).
+   */
+  public ChunkedBoard(Board board, ForkJoinPool pool) {
+    if (board.getTopology() != Topology.SQUARE4)
+      throw new IllegalArgumentException("chunks need a square board, not " + board.getTopology());
+    this.size = board.getSize();
+    this.pool = pool;
+    chunksPerSide = (size + CHUNK - 1) / CHUNK;
+    colors = new byte[size * size];
+    flooded = new boolean[size * size];
+    floodedInChunk = new int[chunksPerSide * chunksPerSide];
+    dirty = new boolean[floodedInChunk.length];
+    nextDirty = new boolean[floodedInChunk.length];
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++)
+        colors[y * size + x] = (byte) board.colorAt(y * size + x);
+    // Move the corner tile into the flooded region and run flood on its color.
+    flooded[0] = true;
+    floodedInChunk[0] = 1;
+    floodedCount = 1;
+    flood(colors[0]);
+  }
+
+  /**
+   * Constructs a copy of the given chunked board that uses the given pool for parallel
+   * floods.
+   */
+  public ChunkedBoard(ChunkedBoard that, ForkJoinPool pool) {
+    this.size = that.size;
+    this.pool = pool;
+    chunksPerSide = that.chunksPerSide;
+    colors = that.colors.clone();
+    flooded = that.flooded.clone();
+    floodedInChunk = that.floodedInChunk.clone();
+    dirty = new boolean[floodedInChunk.length];
+    nextDirty = new boolean[floodedInChunk.length];
+    regionColor = that.regionColor;
+    floodedCount = that.floodedCount;
+  }
+
+  /**
+   * Returns the size of this board.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the color of the tile at the specified coordinate, for boards colored from the
+   * default palette.
+   */
+  public WaterColor getColor(Coord coord) {
+    return WaterColor.of(colorAt(coord.getY() * size + coord.getX()));
+  }
+
+  /**
+   * Returns the color id of the tile at the given index (y * size + x).
+   */
+  public int colorAt(int index) {
+    return flooded[index] ? regionColor : colors[index];
+  }
+
+  /**
+   * Returns true iff the tile at the specified coordinate is in the flooded region.
+   */
+  public boolean isFlooded(Coord coord) {
+    return isFlooded(coord.getY() * size + coord.getX());
+  }
+
+  /**
+   * Returns true iff the tile at the given index (y * size + x) is in the flooded region.
+   */
+  public boolean isFlooded(int index) {
+    return flooded[index];
+  }
+
+  /**
+   * Returns true iff all tiles on the board have the same color.
+   */
+  public boolean fullyFlooded() {
+    return floodedCount == size * size;
+  }
+
+  /**
+   * Updates this board by changing the color of the current flood region and extending
+   * its reach. Tiles in the flooded region are not recolored one by one; their color is
+   * the region color.
+   */
+  public void flood(WaterColor color) {
+    flood(color.ordinal());
+  }
+
+  /**
+   * Same as flood(WaterColor), for boards colored from any palette.
+   */
+  public void flood(int color) {
+    regionColor = (byte) color;
+    // Every chunk that holds part of the region may grow, and so may the chunks next to it.
+    for (int cy = 0; cy < chunksPerSide; cy++)
+      for (int cx = 0; cx < chunksPerSide; cx++) {
+        int k = cy * chunksPerSide + cx;
+        if (floodedInChunk[k] == 0)
+          continue;
+        if (floodedInChunk[k] < chunkArea(cx, cy))
+          dirty[k] = true;
+        if (cx > 0) dirty[k - 1] = true;
+        if (cx < chunksPerSide - 1) dirty[k + 1] = true;
+        if (cy > 0) dirty[k - chunksPerSide] = true;
+        if (cy < chunksPerSide - 1) dirty[k + chunksPerSide] = true;
+      }
+    List<ChunkTask> round = new ArrayList<>();
+    while (true) {
+      round.clear();
+      for (int k = 0; k < dirty.length; k++)
+        if (dirty[k]) {
+          dirty[k] = false;
+          round.add(new ChunkTask(k));
+        }
+      if (round.isEmpty())
+        return;
+      pool.invoke(new RecursiveAction() {
+        protected void compute() {
+          invokeAll(round);
+        }
+      });
+      for (ChunkTask task : round)
+        floodedCount += task.absorbed;
+      boolean[] tmp = dirty;
+      dirty = nextDirty;
+      nextDirty = tmp;
+    }
+  }
+
+  /**
+   * Returns the number of tiles in the chunk at (cx, cy); chunks on the right and bottom
+   * edges may be cut short by the board.
+   */
+  private int chunkArea(int cx, int cy) {
+    return (Math.min(size, (cx + 1) * CHUNK) - cx * CHUNK) * (Math.min(size, (cy + 1) * CHUNK) - cy * CHUNK);
+  }
+
+  /**
+   * Floods one chunk locally for one round.
+   */
+  private class ChunkTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int chunk;
+    private int absorbed;
+
+    ChunkTask(int chunk) {
+      this.chunk = chunk;
+    }
+
+    protected void compute() {
+      int x0 = (chunk % chunksPerSide) * CHUNK, y0 = (chunk / chunksPerSide) * CHUNK;
+      int x1 = Math.min(size, x0 + CHUNK), y1 = Math.min(size, y0 + CHUNK);
+      byte c = regionColor;
+      int[] stack = stacks.get();
+      int top = 0;
+      // Seed with the tiles of the selected color that touch the region. Tiles of
+      // neighboring chunks may be read while they are being flooded; a tile missed
+      // that way marks this chunk dirty again for the next round.
+      for (int y = y0; y < y1; y++)
+        for (int x = x0; x < x1; x++) {
+          int i = y * size + x;
+          if (flooded[i] || colors[i] != c)
+            continue;
+          if ((x > 0 && flooded[i - 1]) || (x < size - 1 && flooded[i + 1])
+              || (y > 0 && flooded[i - size]) || (y < size - 1 && flooded[i + size])) {
+            flooded[i] = true;
+            stack[top++] = i;
+          }
+        }
+      absorbed = top;
+      while (top > 0) {
+        int i = stack[--top];
+        int x = i % size, y = i / size;
+        if (x > 0)
+          top = visit(i - 1, x - 1 >= x0, c, stack, top);
+        if (x < size - 1)
+          top = visit(i + 1, x + 1 < x1, c, stack, top);
+        if (y > 0)
+          top = visit(i - size, y - 1 >= y0, c, stack, top);
+        if (y < size - 1)
+          top = visit(i + size, y + 1 < y1, c, stack, top);
+      }
+      floodedInChunk[chunk] += absorbed;
+    }
+
+    /**
+     * Absorbs tile i if it is local to this chunk, or marks its chunk dirty otherwise.
+     * Returns the new top of the stack.
+     */
+    private int visit(int i, boolean local, byte c, int[] stack, int top) {
+      if (flooded[i] || colors[i] != c)
+        return top;
+      if (!local) {
+        int x = i % size, y = i / size;
+        nextDirty[(y / CHUNK) * chunksPerSide + x / CHUNK] = true;
+        return top;
+      }
+      flooded[i] = true;
+      absorbed++;
+      stack[top] = i;
+      return top + 1;
+    }
+  }
+
+  /**
+   * Returns a string representation of this board, in the same form as Board.toString().
+   */
+  public String toString() {
+    StringBuilder ans = new StringBuilder();
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        int i = y * size + x;
+        String color = Palette.name(colorAt(i));
+        ans.append(flooded[i] ? color.toUpperCase() : color);
+        ans.append("\t");
+      }
+      ans.append("\n");
+    }
+    return ans.toString();
+  }
+
+  /**
+   * Benchmark. For each board size, plays the same sequence of moves on a Board (using
+   * the single-threaded Board.flood) and on chunked boards flooded with 1, 2, 4, ...
+   * pool threads, and reports the elapsed times and speedups against Board.flood and
+   * against one pool thread.
+   *
+   * Usage: ChunkedBoard [size ...]
+   */
+  public static void main(String... args) {
+    int[] sizes = { 32, 64, 256, 512, 1024 };
+    if (args.length > 0) {
+      sizes = new int[args.length];
+      for (int i = 0; i < args.length; i++)
+        sizes[i] = Integer.parseInt(args[i]);
+    }
+    int cores = Runtime.getRuntime().availableProcessors();
+    List<Integer> threads = new ArrayList<>();
+    for (int p = 1; p < cores; p *= 2)
+      threads.add(p);
+    threads.add(cores);
+
+    System.out.print("size\tmoves\tBoard.flood(ms)");
+    for (int p : threads)
+      System.out.print("\tp=" + p + "(ms)\tvs flood\tvs p=1");
+    System.out.println();
+    for (int size : sizes) {
+      Board board = new Board(size);
+      ChunkedBoard initial = new ChunkedBoard(board);
+      // Record a move sequence that floods the whole board by cycling through the colors.
+      List<Integer> moves = new ArrayList<>();
+      ChunkedBoard warmup = new ChunkedBoard(initial, ForkJoinPool.commonPool());
+      for (int i = 0; !warmup.fullyFlooded(); i++) {
+        int color = i % board.getPalette().size();
+        warmup.flood(color);
+        moves.add(color);
+      }
+      long start = System.nanoTime();
+      for (int color : moves)
+        board.flood(color);
+      double baseline = (System.nanoTime() - start) / 1e6;
+      System.out.printf("%d\t%d\t%.1f", size, moves.size(), baseline);
+      double single = Double.NaN;
+      for (int p : threads) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        ChunkedBoard chunked = new ChunkedBoard(initial, pool);
+        start = System.nanoTime();
+        for (int color : moves)
+          chunked.flood(color);
+        double elapsed = (System.nanoTime() - start) / 1e6;
+        pool.shutdown();
+        if (p == 1)
+          single = elapsed;
+        System.out.printf("\t%.1f\t%.2f\t%.2f", elapsed, baseline / elapsed, single / elapsed);
+      }
+      System.out.println();
+    }
+  }
+}
@@ -10,6 +10,14 @@ public class Constants {
   public static final int NUM_GAMES_TO_AUTOPLAY = 5;
   public static final int MAX_DIM = 101;
   public static final String TEST_GRAPH = "results.png";
+  public static final String CORPUS_DIR = "corpus";
+  public static final int SUGGESTION_CACHE_SIZE = 100_000;
+  public static final String ALLOCATION_BASELINE = "allocation-baseline.properties";
+  public static final String BATCH_RESULTS = "batch-results.tsv";
+  public static final double SIGNIFICANCE = 0.05;
+  public static final String RESULTS_DIR = "results";
+  public static final int SHARD_PORT = 7778;
+  public static final String LATENCY_REPORT = "latency.txt";
   
   public static final int DEFAULT_SIZE = 14;
 }
@@ -0,0 +1,130 @@
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures how well Coord.hashCode() spreads the coordinates of a board over the buckets
+ * of a HashMap, and compares HashMap<Coord, Tile> with CoordMap<Tile> for lookup speed and
+ * memory.
+ *
+ * For every board size up to Constants.MAX_DIM, all of the board's coordinates go into a
+ * table of the capacity HashMap would use, with HashMap's own spreading of hash codes.
+ * The report gives the number of distinct hash codes, the longest bucket, and the mean
+ * number of keys examined by a successful lookup, next to the value expected for a
+ * uniformly random hash (1 + load / 2).
+ *
+ * Both maps are sized up front for the board, so the bytes reported are those of the
+ * filled maps (not counting the Coords and Tiles themselves).
+ *
+ * Usage: CoordHashBenchmark [lookups]
+ */
+
+public class CoordHashBenchmark {
+  private static final com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  /**
+   * Bucket statistics of one board size.
+   */
+  private static class Spread {
+    int keys, distinct, buckets, longest;
+    double probes, expected;
+  }
+
+  private static Spread spread(int size) {
+    Spread s = new Spread();
+    s.keys = size * size;
+    s.buckets = 1;
+    while (s.buckets < s.keys / 0.75)
+      s.buckets <<= 1;
+    s.buckets = Math.max(16, s.buckets);
+    int[] bucket = new int[s.buckets];
+    Set<Integer> hashes = new HashSet<>();
+    long probes = 0;
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++) {
+        int h = new Coord(x, y).hashCode();
+        hashes.add(h);
+        int b = (h ^ (h >>> 16)) & (s.buckets - 1);
+        probes += ++bucket[b];  // the new key is found after the ones already there
+        s.longest = Math.max(s.longest, bucket[b]);
+      }
+    s.distinct = hashes.size();
+    s.probes = (double) probes / s.keys;
+    s.expected = 1 + (double) s.keys / s.buckets / 2;
+    return s;
+  }
+
+  /**
+   * Times the given number of random lookups of the tiles of a board of the given size in
+   * both maps, and reports the bytes allocated to build each map.
+   */
+  private static void compareMaps(int size, int lookups) {
+    Coord[] coords = new Coord[size * size];
+    Tile[] tiles = new Tile[coords.length];
+    for (int i = 0; i < coords.length; i++) {
+      coords[i] = new Coord(i % size, i / size);
+      tiles[i] = new Tile(coords[i], i % 5);
+    }
+    Coord[] probes = new Coord[lookups];
+    Random gen = new Random(45);
+    for (int i = 0; i < lookups; i++)
+      probes[i] = new Coord(gen.nextInt(size), gen.nextInt(size));  // fresh keys, as in Board code
+
+    long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    Map<Coord, Tile> hashMap = new HashMap<>(coords.length * 4 / 3 + 1);
+    for (int i = 0; i < coords.length; i++)
+      hashMap.put(coords[i], tiles[i]);
+    long hashMapBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+    before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    CoordMap<Tile> coordMap = new CoordMap<>(coords.length);
+    for (int i = 0; i < coords.length; i++)
+      coordMap.put(coords[i], tiles[i]);
+    long coordMapBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+    double hashMapNanos = 0, coordMapNanos = 0;
+    long check = 0;
+    for (int round = 0; round < 10; round++) {  // the first rounds warm up the JIT
+      long start = System.nanoTime();
+      for (Coord c : probes)
+        check += hashMap.get(c).getColorId();
+      hashMapNanos = (double) (System.nanoTime() - start) / lookups;
+      start = System.nanoTime();
+      for (Coord c : probes)
+        check -= coordMap.get(c).getColorId();
+      coordMapNanos = (double) (System.nanoTime() - start) / lookups;
+    }
+    if (check != 0)
+      throw new IllegalStateException("the maps disagree");
+    System.out.printf("%d\t%.1f\t%.1f\t%.2f\t%d\t%d\t%.2f%n", size, hashMapNanos, coordMapNanos,
+        hashMapNanos / coordMapNanos, hashMapBytes, coordMapBytes, (double) hashMapBytes / coordMapBytes);
+  }
+
+  public static void main(String... args) {
+    int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    System.out.println("Coord.hashCode() in a HashMap, every board size up to " + Constants.MAX_DIM);
+    System.out.println("size\tkeys\tdistinct\tbuckets\tlongest\tprobes\tuniform");
+    Spread worst = null;
+    int worstSize = 0;
+    for (int size = 1; size <= Constants.MAX_DIM; size++) {
+      Spread s = spread(size);
+      if (size <= 4 || size % 10 == 0 || size == Constants.DEFAULT_SIZE || size == Constants.MAX_DIM)
+        System.out.printf("%d\t%d\t%d\t%d\t%d\t%.2f\t%.2f%n", size, s.keys, s.distinct, s.buckets, s.longest,
+            s.probes, s.expected);
+      if (worst == null || s.probes / s.expected > worst.probes / worst.expected) {
+        worst = s;
+        worstSize = size;
+      }
+    }
+    System.out.printf("worst size %d: %.2f probes per lookup, %.2fx uniform, longest bucket %d%n", worstSize,
+        worst.probes, worst.probes / worst.expected, worst.longest);
+
+    System.out.println();
+    System.out.println("size\tHashMap(ns)\tCoordMap(ns)\tspeedup\tHashMap(B)\tCoordMap(B)\tratio");
+    for (int size : new int[] { Constants.DEFAULT_SIZE, 50, Constants.MAX_DIM })
+      compareMaps(size, lookups);
+  }
+}
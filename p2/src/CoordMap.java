@@ -0,0 +1,170 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A map from Coords to non-null values, with the operations of Map<Coord, V> that a board
+ * needs (get, put, remove, containsKey, size and iteration over the values).
+ *
+ * Keys are stored packed, x in the high and y in the low 32 bits of a long, in an
+ * open-addressing table with linear probing: no entry objects and no Coord objects are
+ * kept, and a lookup is a hash and a short scan of two parallel arrays. The packed key is
+ * hashed by multiplication, so the quality of Coord.hashCode() does not matter.
+ * The table is kept at most three quarters full. A null value marks an empty slot; removal
+ * shifts later entries of the probe run back.
+ */
+
+public class CoordMap<V> implements Iterable<V> {
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] keys;
+  private Object[] values;
+  private int size, mask, shift;
+
+  /**
+   * Creates an empty map.
+   */
+  public CoordMap() {
+    this(MIN_CAPACITY / 2);
+  }
+
+  /**
+   * Creates an empty map that holds the given number of entries without resizing.
+   */
+  public CoordMap(int expected) {
+    int capacity = MIN_CAPACITY;
+    while (capacity * 3L / 4 < expected)
+      capacity <<= 1;
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+  }
+
+  private static long pack(int x, int y) {
+    return (long) x << 32 | (y & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns the home slot of the given key: the top bits of the key times 2^64 divided by
+   * the golden ratio (Fibonacci hashing), which depend on every bit of the key.
+   */
+  private int slot(long key) {
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+  }
+
+  /**
+   * Returns the index of the slot holding the given key, or of the empty slot where it
+   * would go.
+   */
+  private int find(long key) {
+    int i = slot(key);
+    while (values[i] != null && keys[i] != key)
+      i = (i + 1) & mask;
+    return i;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(int x, int y) {
+    return (V) values[find(pack(x, y))];
+  }
+
+  public V get(Coord coord) {
+    return get(coord.getX(), coord.getY());
+  }
+
+  public boolean containsKey(Coord coord) {
+    return get(coord) != null;
+  }
+
+  /**
+   * Maps the given coordinate to the given value and returns the previous value, if any.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(Coord coord, V value) {
+    if (value == null)
+      throw new NullPointerException("CoordMap values cannot be null");
+    long key = pack(coord.getX(), coord.getY());
+    int i = find(key);
+    V old = (V) values[i];
+    keys[i] = key;
+    values[i] = value;
+    if (old == null && ++size > keys.length * 3L / 4)
+      resize();
+    return old;
+  }
+
+  /**
+   * Removes the given coordinate and returns its value, if any.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(Coord coord) {
+    int i = find(pack(coord.getX(), coord.getY()));
+    V old = (V) values[i];
+    if (old == null)
+      return null;
+    size--;
+    values[i] = null;
+    // Move back every later entry of the probe run whose home slot is not after the hole,
+    // so that lookups never stop at the hole before reaching it.
+    for (int hole = i, j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask)
+      if (((j - slot(keys[j])) & mask) >= ((j - hole) & mask)) {
+        keys[hole] = keys[j];
+        values[hole] = values[j];
+        values[j] = null;
+        hole = j;
+      }
+    return old;
+  }
+
+  private void resize() {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    allocate(2 * oldKeys.length);
+    for (int i = 0; i < oldKeys.length; i++)
+      if (oldValues[i] != null) {
+        int j = find(oldKeys[i]);
+        keys[j] = oldKeys[i];
+        values[j] = oldValues[i];
+      }
+  }
+
+  /**
+   * Iterates over the values, in no particular order.
+   */
+  public Iterator<V> iterator() {
+    return new Iterator<V>() {
+      private int next = advance(0);
+
+      private int advance(int i) {
+        while (i < values.length && values[i] == null)
+          i++;
+        return i;
+      }
+
+      public boolean hasNext() {
+        return next < values.length;
+      }
+
+      @SuppressWarnings("unchecked")
+      public V next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        V value = (V) values[next];
+        next = advance(next + 1);
+        return value;
+      }
+    };
+  }
+}
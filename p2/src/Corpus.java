@@ -0,0 +1,105 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A Corpus is a persistent collection of puzzles, bucketed by board size and difficulty.
+ * A puzzle is stored as the seed its board is generated from, so a bucket is a small
+ * text file: dir/size-S/moves-M.txt holds one "seed lower upper" line per puzzle of size
+ * S whose BoundEstimator upper bound is M. Files are only ever appended to.
+ */
+
+public class Corpus {
+  private final Path dir;
+
+  /**
+   * One stored puzzle.
+   */
+  public static class Entry {
+    public final int size;
+    public final long seed;
+    public final int lower, upper;
+
+    public Entry(int size, long seed, int lower, int upper) {
+      this.size = size;
+      this.seed = seed;
+      this.lower = lower;
+      this.upper = upper;
+    }
+
+    /**
+     * Returns a fresh board for this puzzle.
+     */
+    public Board board() {
+      return Corpus.board(size, seed);
+    }
+
+    public String toString() {
+      return "Entry[size " + size + ", seed " + seed + ", " + lower + ".." + upper + " moves]";
+    }
+  }
+
+  /**
+   * Opens (or starts) the corpus in the given directory.
+   */
+  public Corpus(Path dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * Opens (or starts) the corpus in Constants.CORPUS_DIR.
+   */
+  public Corpus() {
+    this(Paths.get(Constants.CORPUS_DIR));
+  }
+
+  /**
+   * Returns the board generated from the given size and seed.
+   */
+  public static Board board(int size, long seed) {
+    return new Board(size, new Random(seed));
+  }
+
+  private Path bucket(int size, int moves) {
+    return dir.resolve("size-" + size).resolve("moves-" + moves + ".txt");
+  }
+
+  /**
+   * Appends the given puzzles to their buckets.
+   */
+  public synchronized void append(List<Entry> entries) throws IOException {
+    for (Entry entry : entries) {
+      Path file = bucket(entry.size, entry.upper);
+      Files.createDirectories(file.getParent());
+      try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII,
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+        out.write(entry.seed + " " + entry.lower + " " + entry.upper);
+        out.newLine();
+      }
+    }
+  }
+
+  /**
+   * Returns the puzzles of the given size that need the given number of moves, in the
+   * order they were added.
+   */
+  public List<Entry> load(int size, int moves) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    Path file = bucket(size, moves);
+    if (!Files.exists(file))
+      return entries;
+    for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+      String[] words = line.trim().split("\\s+");
+      if (words.length == 3)
+        entries.add(new Entry(size, Long.parseLong(words[0]), Integer.parseInt(words[1]), Integer.parseInt(words[2])));
+    }
+    return entries;
+  }
+}
@@ -0,0 +1,281 @@
+import java.awt.Canvas;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Toolkit;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferStrategy;
+import java.awt.image.VolatileImage;
+import java.util.ArrayDeque;
+
+import javax.swing.Timer;
+
+/**
+ * Draws a game board and animates each move as a wave: the flooded region takes the new
+ * color at once, then the absorbed tiles are revealed ring by ring, in order of their
+ * distance (in steps) from the region as it was before the move.
+ *
+ * The tiles are kept drawn in an off-screen VolatileImage; a frame draws only the tiles
+ * revealed since the last one into it, then copies it to the screen through a
+ * BufferStrategy. Frames are driven by a timer at FPS frames per second, and the wave
+ * advances with elapsed time, so a late frame catches up instead of slowing the wave.
+ * All per-move and per-frame state lives in arrays sized for the board, so frames do not
+ * allocate (apart from the Graphics that BufferStrategy hands out).
+ *
+ * Clicks take the color shown on the clicked tile, which during a wave may not be the
+ * model's color yet, and are queued: each move is made on the board only when the wave
+ * of the move before has finished.
+ */
+
+public class FloodCanvas extends Canvas {
+  private static final long serialVersionUID = 1L;
+  public static final int FPS = 60;
+  private static final long RING_NANOS = 25_000_000;      // time between two rings of a wave
+  private static final long MAX_WAVE_NANOS = 500_000_000;  // longer waves have faster rings
+
+  private final GUI gui;
+  private final Game game;
+  private final Board board;
+  private final int size;
+  private final Adjacency adj;
+  private final BoardListener listener = (b, change) -> startWave(change);
+  private final Timer timer = new Timer(1000 / FPS, e -> frame());
+  private final ArrayDeque<Integer> clicks = new ArrayDeque<>();  // color ids
+
+  private final int[] shown;    // the color id drawn on each tile
+  private final int[] wave;     // the tiles of the current wave, ring by ring
+  private final int[] ring;     // the ring of each tile in the wave that absorbed it
+  private final int[] waveMark; // the wave in which each tile was absorbed
+  private int waveLength, revealed, waves, waveColor;
+  private long waveStart, ringNanos;
+
+  private final int[] dirty;    // the tiles to draw in the next frame
+  private int dirtyCount;
+  private boolean redrawAll = true;
+
+  private VolatileImage image;
+  private Graphics2D imageGraphics;
+
+  /**
+   * Creates a canvas that shows and plays the given game, reporting to the given gui.
+   */
+  public FloodCanvas(GUI gui, Game game) {
+    this.gui = gui;
+    this.game = game;
+    board = game.getBoard();
+    size = board.getSize();
+    adj = board.getTopology().adjacency(size);
+    int n = size * size;
+    shown = new int[n];
+    for (int i = 0; i < n; i++)
+      shown[i] = board.colorAt(i);
+    wave = new int[n];
+    ring = new int[n];
+    waveMark = new int[n];
+    dirty = new int[n];
+    setIgnoreRepaint(true);  // frames are drawn by the timer, not by the AWT paint cycle
+    addMouseListener(new MouseAdapter() {
+      public void mousePressed(MouseEvent e) {
+        int x = e.getX() * size / Math.max(1, getWidth()), y = e.getY() * size / Math.max(1, getHeight());
+        if (x < size && y < size)
+          click(shown[y * size + x]);
+      }
+    });
+  }
+
+  public void addNotify() {
+    super.addNotify();
+    board.addListener(listener);
+  }
+
+  public void removeNotify() {
+    timer.stop();
+    LatencyMonitor.GLOBAL.cancel(clicks.size());
+    clicks.clear();
+    board.removeListener(listener);
+    super.removeNotify();
+  }
+
+  /**
+   * Queues a move with the given color id, and makes it now if no wave is running.
+   */
+  private void click(int color) {
+    LatencyMonitor.GLOBAL.input(size);
+    clicks.add(color);
+    if (!animating())
+      nextMove();
+  }
+
+  private boolean animating() {
+    return revealed < waveLength;
+  }
+
+  /**
+   * Makes the next queued move, if any. The board's listener starts its wave.
+   */
+  private void nextMove() {
+    Integer color = clicks.poll();
+    if (color == null)
+      return;
+    game.select(color);
+    gui.setSteps();
+    LatencyMonitor.GLOBAL.modelUpdated();
+    if (!animating())  // nothing absorbed: the move is over already
+      moveOver();
+  }
+
+  /**
+   * Ends the game if the last move won or lost it, or else goes on with the queue.
+   */
+  private void moveOver() {
+    if (board.fullyFlooded() || game.isLost()) {
+      LatencyMonitor.GLOBAL.cancel(clicks.size());
+      clicks.clear();
+      flush();
+      if (board.fullyFlooded())
+        gui.youWin();
+      else
+        gui.youLose();
+    }
+    else
+      nextMove();
+  }
+
+  /**
+   * Sets up the wave of the given move: recolors the old region at once, and puts every
+   * absorbed tile in the ring one past its nearest neighbor that was flooded before it.
+   * Board.flood() absorbs tiles in breadth-first order from the old region, so the rings
+   * come out in order.
+   */
+  private void startWave(BoardChange change) {
+    if (animating())
+      finishWave();
+    waves++;
+    int absorbed = change.absorbedCount();
+    for (int k = 0; k < absorbed; k++) {
+      waveMark[change.absorbed(k)] = waves;
+      ring[change.absorbed(k)] = Integer.MAX_VALUE - 1;
+    }
+    if (change.isRecolored())
+      for (int r = 0; r < board.floodedSize() - absorbed; r++)
+        show(board.regionTile(r), change.getNewColor());
+    for (int k = 0; k < absorbed; k++) {
+      int i = change.absorbed(k), nearest = Integer.MAX_VALUE - 1;
+      for (int e = adj.start[i]; e < adj.start[i + 1]; e++) {
+        int j = adj.target[e];
+        if (board.isFlooded(j))
+          nearest = Math.min(nearest, waveMark[j] == waves ? ring[j] : 0);
+      }
+      ring[i] = nearest + 1;
+      wave[k] = i;
+    }
+    waveColor = change.getNewColor();
+    waveLength = absorbed;
+    revealed = 0;
+    ringNanos = absorbed == 0 ? RING_NANOS : Math.min(RING_NANOS, MAX_WAVE_NANOS / ring[wave[absorbed - 1]]);
+    waveStart = System.nanoTime();
+    if (absorbed > 0 || change.isRecolored())
+      timer.start();
+  }
+
+  private void finishWave() {
+    while (revealed < waveLength)
+      show(wave[revealed++], waveColor);
+  }
+
+  private void show(int i, int color) {
+    shown[i] = color;
+    if (dirtyCount < dirty.length)
+      dirty[dirtyCount++] = i;
+    else
+      redrawAll = true;  // several moves without a frame in between
+  }
+
+  /**
+   * Reveals every ring whose time has come, draws, and ends the move when the wave is
+   * done.
+   */
+  private void frame() {
+    boolean wasAnimating = animating();
+    long due = (System.nanoTime() - waveStart) / ringNanos + 1;
+    while (revealed < waveLength && ring[wave[revealed]] <= due)
+      show(wave[revealed++], waveColor);
+    render();
+    if (!animating()) {
+      timer.stop();
+      if (wasAnimating)
+        moveOver();
+    }
+  }
+
+  /**
+   * Shows everything that is pending at once.
+   */
+  private void flush() {
+    finishWave();
+    render();
+  }
+
+  public void paint(Graphics g) {
+    redrawAll = true;
+    render();
+  }
+
+  public void update(Graphics g) {
+    paint(g);
+  }
+
+  /**
+   * Draws the dirty tiles (or all tiles, if the image was lost or resized) into the
+   * off-screen image and copies the image to the screen.
+   */
+  private void render() {
+    int width = getWidth(), height = getHeight();
+    if (!isDisplayable() || width <= 0 || height <= 0)
+      return;
+    if (getBufferStrategy() == null)
+      createBufferStrategy(2);
+    BufferStrategy strategy = getBufferStrategy();
+    do {
+      GraphicsConfiguration config = getGraphicsConfiguration();
+      if (image == null || image.getWidth() != width || image.getHeight() != height) {
+        if (image != null) {
+          imageGraphics.dispose();
+          image.flush();
+        }
+        image = config.createCompatibleVolatileImage(width, height);
+        imageGraphics = image.createGraphics();
+        redrawAll = true;
+      }
+      else if (image.validate(config) != VolatileImage.IMAGE_OK) {
+        imageGraphics.dispose();
+        imageGraphics = image.createGraphics();
+        redrawAll = true;
+      }
+      if (redrawAll)
+        for (int i = 0; i < shown.length; i++)
+          drawTile(i, width, height);
+      else
+        for (int d = 0; d < dirtyCount; d++)
+          drawTile(dirty[d], width, height);
+      redrawAll = false;
+      dirtyCount = 0;
+      do {
+        Graphics g = strategy.getDrawGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+      } while (strategy.contentsRestored());
+      strategy.show();
+    } while (image.contentsLost() || strategy.contentsLost());
+    Toolkit.getDefaultToolkit().sync();
+    LatencyMonitor.GLOBAL.painted();
+  }
+
+  private void drawTile(int i, int width, int height) {
+    int x = i % size, y = i / size;
+    int left = x * width / size, top = y * height / size;
+    imageGraphics.setColor(Palette.get(shown[i]));
+    imageGraphics.fillRect(left, top, (x + 1) * width / size - left, (y + 1) * height / size - top);
+  }
+}
@@ -0,0 +1,332 @@
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A randomized differential test of the flood engines. Every engine plays the same seeded
+ * boards and move sequences as a plain breadth-first reference flood, and the full board
+ * state (every tile's color and whether it is flooded) is compared after each move.
+ *
+ * The engines are every flood function of Board (found by reflection, as in
+ * Game.batchTest()), ChunkedBoard and RowFloodBoard. When an engine disagrees with the reference, the
+ * failing case is shrunk to a minimal one: the moves after the first disagreement are
+ * dropped, then single moves are removed, the board is cut down to its top-left corner,
+ * and tile colors are replaced by color 0, for as long as the engine still disagrees.
+ *
+ * Most boards are small, up to MAX_SIZE, which keeps cases fast and failures easy to read.
+ * Every LARGE_EVERY-th board is larger than ChunkedBoard.CHUNK, so that ChunkedBoard floods
+ * across chunks and RowFloodBoard across words.
+ *
+ * flood1 and flood2 are known to miss tiles (see their comments in Board); their failures
+ * are reported but do not fail the run. They take time quadratic in the region size, so
+ * they only play the small boards.
+ *
+ * Usage: FloodDifferential [cases [seed]]
+ */
+
+public class FloodDifferential {
+  private static final int MAX_SIZE = 12;
+  private static final int LARGE_EVERY = 25, MAX_LARGE_SIZE = 2 * ChunkedBoard.CHUNK + 3;
+  private static final Set<String> KNOWN_GAPS = Set.of("flood1", "flood2");
+
+  /**
+   * A flood engine under test, started on given tile colors.
+   */
+  interface Engine {
+    void flood(int color);
+
+    int color(int index);
+
+    boolean isFlooded(int index);
+  }
+
+  /**
+   * Creates an engine on the given tile colors (row-major) of a square board.
+   */
+  interface EngineFactory {
+    Engine start(int size, int[] colors);
+  }
+
+  /**
+   * A failing case: a board, a move sequence, and what went wrong on its last move.
+   */
+  static class Failure {
+    final int size;
+    final int[] colors, moves;
+    final String mismatch;
+
+    Failure(int size, int[] colors, int[] moves, String mismatch) {
+      this.size = size;
+      this.colors = colors;
+      this.moves = moves;
+      this.mismatch = mismatch;
+    }
+
+    public String toString() {
+      StringBuilder ans = new StringBuilder();
+      ans.append(size + "x" + size + " board, moves [");
+      for (int m = 0; m < moves.length; m++)
+        ans.append(m == 0 ? "" : ", ").append(Palette.name(moves[m]));
+      ans.append("]: ").append(mismatch).append('\n');
+      for (int y = 0; y < size; y++) {
+        ans.append("  ");
+        for (int x = 0; x < size; x++)
+          ans.append(Palette.name(colors[y * size + x])).append(x + 1 < size ? "\t" : "\n");
+      }
+      return ans.toString();
+    }
+  }
+
+  /**
+   * The reference: a breadth-first flood from the corner, written for clarity only.
+   */
+  static class Reference implements Engine {
+    private final int size;
+    private final int[] colors;
+    private final boolean[] flooded;
+
+    Reference(int size, int[] colors) {
+      this.size = size;
+      this.colors = colors.clone();
+      flooded = new boolean[colors.length];
+      if (colors.length > 0) {
+        flooded[0] = true;
+        flood(colors[0]);
+      }
+    }
+
+    public void flood(int color) {
+      ArrayDeque<Integer> queue = new ArrayDeque<>();
+      for (int i = 0; i < colors.length; i++)
+        if (flooded[i]) {
+          colors[i] = color;
+          queue.add(i);
+        }
+      while (!queue.isEmpty()) {
+        int i = queue.remove(), x = i % size, y = i / size;
+        int[][] neighbors = { { x, y - 1 }, { x, y + 1 }, { x - 1, y }, { x + 1, y } };
+        for (int[] n : neighbors) {
+          if (n[0] < 0 || n[1] < 0 || n[0] >= size || n[1] >= size)
+            continue;
+          int j = n[1] * size + n[0];
+          if (!flooded[j] && colors[j] == color) {
+            flooded[j] = true;
+            queue.add(j);
+          }
+        }
+      }
+    }
+
+    public int color(int index) {
+      return colors[index];
+    }
+
+    public boolean isFlooded(int index) {
+      return flooded[index];
+    }
+  }
+
+  /**
+   * Returns the engines under test, by name.
+   */
+  static Map<String, EngineFactory> engines() {
+    Map<String, EngineFactory> engines = new LinkedHashMap<>();
+    for (Method method : AllocationHarness.floodFunctions())
+      engines.put(method.getName(), (size, colors) -> {
+        Board board = new Board(size, Palette.DEFAULT, Topology.SQUARE4, colors);
+        return new Engine() {
+          public void flood(int color) {
+            try {
+              method.invoke(board, WaterColor.values()[color]);
+            }
+            catch (InvocationTargetException e) {
+              throw new IllegalStateException(e.getCause());
+            }
+            catch (IllegalAccessException e) {
+              throw new IllegalStateException(e);
+            }
+          }
+
+          public int color(int index) {
+            return board.colorAt(index);
+          }
+
+          public boolean isFlooded(int index) {
+            return board.isFlooded(index);
+          }
+        };
+      });
+    engines.put("ChunkedBoard", (size, colors) -> {
+      ChunkedBoard board = new ChunkedBoard(new Board(size, Palette.DEFAULT, Topology.SQUARE4, colors));
+      return new Engine() {
+        public void flood(int color) {
+          board.flood(color);
+        }
+
+        public int color(int index) {
+          return board.colorAt(index);
+        }
+
+        public boolean isFlooded(int index) {
+          return board.isFlooded(index);
+        }
+      };
+    });
+    engines.put("RowFloodBoard", (size, colors) -> {
+      RowFloodBoard board = new RowFloodBoard(new Board(size, Palette.DEFAULT, Topology.SQUARE4, colors));
+      return new Engine() {
+        public void flood(int color) {
+          board.flood(color);
+        }
+
+        public int color(int index) {
+          return board.colorAt(index);
+        }
+
+        public boolean isFlooded(int index) {
+          return board.isFlooded(index);
+        }
+      };
+    });
+    return engines;
+  }
+
+  /**
+   * Plays the moves on the engine and the reference. Returns null if they agree after
+   * every move, or else the failure, truncated to the first move where they disagree.
+   */
+  static Failure check(EngineFactory factory, int size, int[] colors, int[] moves) {
+    Engine engine, reference = new Reference(size, colors);
+    try {
+      engine = factory.start(size, colors);
+    }
+    catch (RuntimeException e) {
+      return new Failure(size, colors, new int[0], "constructor threw " + e);
+    }
+    for (int m = 0; m <= moves.length; m++) {
+      if (m > 0)
+        try {
+          reference.flood(moves[m - 1]);
+          engine.flood(moves[m - 1]);
+        }
+        catch (RuntimeException e) {
+          return new Failure(size, colors, Arrays.copyOf(moves, m), "threw " + e);
+        }
+      for (int i = 0; i < colors.length; i++)
+        if (engine.isFlooded(i) != reference.isFlooded(i) || engine.color(i) != reference.color(i)) {
+          String mismatch = String.format("after move %d, tile (%d, %d) is %s%s, expected %s%s", m, i % size, i / size,
+              Palette.name(engine.color(i)), engine.isFlooded(i) ? " (flooded)" : "",
+              Palette.name(reference.color(i)), reference.isFlooded(i) ? " (flooded)" : "");
+          return new Failure(size, colors, Arrays.copyOf(moves, m), mismatch);
+        }
+    }
+    return null;
+  }
+
+  /**
+   * Shrinks the given failure of the given engine to a minimal one.
+   */
+  static Failure shrink(EngineFactory factory, Failure failure) {
+    boolean progress = true;
+    while (progress) {
+      progress = false;
+      // Drop single moves.
+      for (int m = failure.moves.length - 1; m >= 0; m--) {
+        int[] fewer = new int[failure.moves.length - 1];
+        System.arraycopy(failure.moves, 0, fewer, 0, m);
+        System.arraycopy(failure.moves, m + 1, fewer, m, fewer.length - m);
+        Failure smaller = check(factory, failure.size, failure.colors, fewer);
+        if (smaller != null) {
+          failure = smaller;
+          progress = true;
+          m = Math.min(m, failure.moves.length);
+        }
+      }
+      // Keep only the top-left corner of the board.
+      for (int size = 1; size < failure.size; size++) {
+        int[] colors = new int[size * size];
+        for (int y = 0; y < size; y++)
+          for (int x = 0; x < size; x++)
+            colors[y * size + x] = failure.colors[y * failure.size + x];
+        Failure smaller = check(factory, size, colors, failure.moves);
+        if (smaller != null) {
+          failure = smaller;
+          progress = true;
+          break;
+        }
+      }
+      // Simplify colors, last tiles first. On large boards that takes a check per tile, too
+      // slow to be worth it; the failure is reported as cropped.
+      for (int i = failure.size > MAX_SIZE ? -1 : failure.colors.length - 1; i >= 0; i--) {
+        if (failure.colors[i] == 0)
+          continue;
+        int[] colors = failure.colors.clone();
+        colors[i] = 0;
+        Failure smaller = check(factory, failure.size, colors, failure.moves);
+        if (smaller != null) {
+          failure = smaller;
+          progress = true;
+        }
+      }
+    }
+    return failure;
+  }
+
+  /**
+   * Runs the given number of random cases against every engine and returns the shrunk
+   * first failure of each engine that failed, by name.
+   */
+  static Map<String, Failure> run(int cases, long seed) {
+    Map<String, Failure> failures = new LinkedHashMap<>();
+    Map<String, EngineFactory> engines = engines();
+    Random gen = new Random(seed);
+    int colorCount = WaterColor.values().length;
+    for (int c = 0; c < cases && failures.size() < engines.size(); c++) {
+      boolean large = c % LARGE_EVERY == LARGE_EVERY - 1;
+      int size = large ? ChunkedBoard.CHUNK + 1 + gen.nextInt(MAX_LARGE_SIZE - ChunkedBoard.CHUNK)
+          : 1 + gen.nextInt(MAX_SIZE);
+      int[] colors = new int[size * size], moves = new int[1 + gen.nextInt(3 * size + 1)];
+      for (int i = 0; i < colors.length; i++)
+        colors[i] = gen.nextInt(colorCount);
+      for (int m = 0; m < moves.length; m++)
+        moves[m] = gen.nextInt(colorCount);
+      for (Map.Entry<String, EngineFactory> e : engines.entrySet()) {
+        if (failures.containsKey(e.getKey()) || large && KNOWN_GAPS.contains(e.getKey()))
+          continue;
+        Failure failure = check(e.getValue(), size, colors, moves);
+        if (failure != null)
+          failures.put(e.getKey(), shrink(e.getValue(), failure));
+      }
+    }
+    return failures;
+  }
+
+  public static void main(String... args) {
+    int cases = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    long seed = args.length > 1 ? Long.parseLong(args[1]) : 43;
+    Map<String, Failure> failures = run(cases, seed);
+    List<String> unexpected = new ArrayList<>();
+    for (String name : engines().keySet()) {
+      Failure failure = failures.get(name);
+      if (failure == null)
+        System.out.println(name + ": agrees with the reference on " + cases + " cases");
+      else {
+        boolean known = KNOWN_GAPS.contains(name);
+        System.out.print(name + (known ? ": FAILS (known gap)" : ": FAILS") + ", minimal case: " + failure);
+        if (!known)
+          unexpected.add(name);
+      }
+    }
+    if (!unexpected.isEmpty()) {
+      System.out.println("Flood engines disagreeing with the reference: " + unexpected);
+      System.exit(1);
+    }
+  }
+}
@@ -3,18 +3,26 @@ import javax.swing.JPanel;
 import javax.swing.JMenuBar;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JButton;
 import javax.swing.UIManager;
 import javax.swing.JOptionPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 import javax.swing.event.MouseInputAdapter;
 
+import java.awt.BorderLayout;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.GridLayout;
+import java.awt.Toolkit;
 
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 
+import java.io.IOException;
+
 /**
  * Builds the gui interface for an interactive run of the game.
  */
@@ -25,6 +33,11 @@ public class GUI extends JFrame {
   private JMenu steps = new JMenu();
   private Board board;
   private Game game;
+  private TileButton[] buttons;
+  private FloodCanvas canvas;
+
+  // Whether moves are animated (see FloodCanvas); kept across restarts.
+  private static boolean animated;
   
   // Boilerplate setup.
   static {
@@ -46,19 +59,45 @@ public class GUI extends JFrame {
     int size = board.getSize();
     
     grid = new JPanel(new GridLayout(size, size));
+    buttons = new TileButton[size * size];
     for (int y = 0; y < size; y++)
-      for (int x = 0; x < size; x++) 
-        grid.add(new TileButton(board.get(new Coord(x, y))));
+      for (int x = 0; x < size; x++) {
+        buttons[y * size + x] = new TileButton(board.get(new Coord(x, y)));
+        grid.add(buttons[y * size + x]);
+      }
+    board.addListener((b, change) -> {
+      if (canvas == null)
+        repaint(change);
+    });
 
     setSteps();
     initMenu();
-    setContentPane(grid);
+    showBoard();
     setPreferredSize(new Dimension(640, 640));
     pack();
     setVisible(true);
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
   }
  
+  /**
+   * Shows the board as a grid of buttons or, when moves are animated, on a FloodCanvas.
+   */
+  private void showBoard() {
+    if (animated) {
+      canvas = new FloodCanvas(this, game);
+      JPanel pane = new JPanel(new BorderLayout());
+      pane.add(canvas);
+      setContentPane(pane);
+    }
+    else {
+      canvas = null;
+      for (TileButton button : buttons)
+        button.repaint();  // the board may have changed while the canvas was shown
+      setContentPane(grid);
+    }
+    revalidate();
+  }
+
   /**
    * Sets up the menu.
    */
@@ -78,6 +117,13 @@ public class GUI extends JFrame {
     });
     gameMenu.add(resize);
 
+    JCheckBoxMenuItem animate = new JCheckBoxMenuItem("Animate", animated);
+    animate.addActionListener(e -> {
+      animated = animate.isSelected();
+      showBoard();
+    });
+    gameMenu.add(animate);
+
     JMenuItem exit = new JMenuItem("Exit");
     exit.addActionListener(e -> dispose());
     gameMenu.add(exit);
@@ -91,13 +137,49 @@ public class GUI extends JFrame {
     help.add(rules);
 
     JMenuItem suggest = new JMenuItem("Suggest");
-    suggest.addActionListener(e -> JOptionPane.showMessageDialog(this, board.suggest())); 
+    suggest.addActionListener(e -> JOptionPane.showMessageDialog(this, Palette.name(game.suggest()))); 
     help.add(suggest);
 
+    JMenuItem latency = new JMenuItem("Latency");
+    latency.addActionListener(e -> showLatency());
+    help.add(latency);
+
     menuBar.add(steps);
     setJMenuBar(menuBar);
   }
 
+  /**
+   * Repaints only the tiles the given move changed: the whole flooded region if it was
+   * recolored, otherwise just the absorbed tiles.
+   */
+  private void repaint(BoardChange change) {
+    if (change.isRecolored())
+      for (int r = 0; r < board.floodedSize(); r++)
+        buttons[board.regionTile(r)].repaint();
+    else
+      for (int k = 0; k < change.absorbedCount(); k++)
+        buttons[change.absorbed(k)].repaint();
+  }
+
+  /**
+   * Shows the click-to-paint latencies measured so far, and writes them with their
+   * histograms to Constants.LATENCY_REPORT.
+   */
+  private void showLatency() {
+    String report = LatencyMonitor.GLOBAL.report();
+    try {
+      LatencyMonitor.GLOBAL.dump(Constants.LATENCY_REPORT);
+      report += "\nHistograms written to " + Constants.LATENCY_REPORT;
+    }
+    catch (IOException e) {
+      report += "\nUnable to write " + Constants.LATENCY_REPORT + ": " + e;
+    }
+    JTextArea text = new JTextArea(report);
+    text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    text.setEditable(false);
+    JOptionPane.showMessageDialog(this, text, "Latency", JOptionPane.PLAIN_MESSAGE);
+  }
+
   /**
    * Updates the display to show the number of steps used by the player so far.
    */
@@ -119,14 +201,20 @@ public class GUI extends JFrame {
       // Add a listener to process player moves and deal with game win/lose conditions.
       addMouseListener(new MouseInputAdapter() {
         public void mousePressed(MouseEvent e) {
+          LatencyMonitor.GLOBAL.input(board.getSize());
           // Update the model
-          game.select(tile.getColor());
-          // Update the view
+          game.select(tile.getColorId());
+          // Update the view (the board's listener repaints the changed tiles)
           setSteps();
-          GUI.this.repaint();
+          LatencyMonitor.GLOBAL.modelUpdated();
+          // The repaint manager has queued its paint by now, so this runs once it is done.
+          SwingUtilities.invokeLater(() -> {
+            Toolkit.getDefaultToolkit().sync();
+            LatencyMonitor.GLOBAL.painted();
+          });
           if (board.fullyFlooded()) 
             youWin();
-          else if (game.noMoreSteps()) 
+          else if (game.isLost()) 
             youLose();
         }    
       });
@@ -136,24 +224,24 @@ public class GUI extends JFrame {
      * Draws the tile on this button.
      */  
     public void paintComponent(Graphics gr) {
-      setBackground(tile.getColor().get());
+      setBackground(Palette.get(tile.getColorId()));
       super.paintComponent(gr);
     }
-    
-    /**
-     * Handles a game loss condition.
-     */
-    private void youLose() {
-      JOptionPane.showMessageDialog(GUI.this, "You lose");
-      game.resize(board.getSize());
-    }
+  }
 
-    /**
-     * Handles a game win condition.
-     */  
-    private void youWin(){
-      JOptionPane.showMessageDialog(GUI.this, "You Win!");
-      game.resize(board.getSize());
-    }
+  /**
+   * Handles a game loss condition.
+   */
+  void youLose() {
+    JOptionPane.showMessageDialog(this, "You lose");
+    game.resize(board.getSize());
+  }
+
+  /**
+   * Handles a game win condition.
+   */  
+  void youWin(){
+    JOptionPane.showMessageDialog(this, "You Win!");
+    game.resize(board.getSize());
   }
 }
@@ -1,8 +1,11 @@
 import static java.lang.Math.toIntExact;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.Random;
 
 import javax.swing.SwingUtilities;
 
@@ -21,7 +24,15 @@ public class Game {
   private boolean interactive = true;
 
   private int currentStep;
+  private int stepLimit;
   private List<Integer> thisRun = new LinkedList<>();  // for timings when running in batch mode
+  private List<Long> thisGames = new ArrayList<>();   // the time of each game of the current autoPlay(), in ns
+  private int wonEarly, lostEarly;                     // autoPlay() games stopped once their outcome was forced
+  private Random gen = new Random();                   // generates the boards; seeded by batchTest()
+
+  // Suggestions shared by all games in this JVM, keyed by board position.
+  private static final SuggestionCache suggestions =
+      new SuggestionCache(Constants.SUGGESTION_CACHE_SIZE, Strategy.GREEDY);
 
   /**
    * Runs a game in interactive mode. See comment for how to run in batch (i.e., testing) mode.
@@ -33,6 +44,8 @@ public class Game {
     
     // Uncomment the following line to run a batch of games and display a graph of the timings:
     // new Game(false).batchTest();
+    // or this one to also compare the timings against an earlier run (see BatchResults):
+    // new Game(false).batchTest(2017, "20170101-120000-000");
   }
 
   /**
@@ -50,6 +63,25 @@ public class Game {
     this.interactive = interactive;
     init();
   }
+
+  /**
+   * Creates a simulated (headless) game on a board of the given size.
+   */
+  public Game(int size) {
+    this.size = size;
+    this.interactive = false;
+    init();
+  }
+
+  /**
+   * Creates a simulated (headless) game on the given board, with the given step limit.
+   */
+  Game(Board board, int stepLimit) {
+    this.size = board.getSize();
+    this.interactive = false;
+    this.board = board;
+    this.stepLimit = stepLimit;
+  }
   
   /**
    * Returns the board associated with this game.
@@ -75,7 +107,8 @@ public class Game {
    */
   
   private void init() {
-    board = new Board(size);
+    board = new Board(size, gen);
+    stepLimit = stepLimit(board);
     currentStep = 0;
     if (interactive)
       theView = new GUI(this);
@@ -88,6 +121,24 @@ public class Game {
   public boolean noMoreSteps() {
     return currentStep == getStepLimit();
   }
+
+  /**
+   * Returns true iff the game can no longer be won: the steps are used up, or more colors
+   * remain outside the flooded region than steps are left (a move removes at most one).
+   */
+  
+  public boolean isLost() {
+    return !board.fullyFlooded() && (noMoreSteps() || board.remainingColorCount() > getStepLimit() - currentStep);
+  }
+
+  /**
+   * Returns true iff the next move wins the game: a step is left, and only one color
+   * remains outside the flooded region, so flooding with it absorbs every tile.
+   */
+  
+  public boolean winsNextMove() {
+    return currentStep < getStepLimit() && board.remainingColorCount() == 1;
+  }
   
   /**
    * Returns the number of steps used by the player so far during this game.
@@ -98,13 +149,53 @@ public class Game {
   }
   
   /**
-   * Returns the maximum number of steps for this game.
+   * Returns the maximum number of steps for this game, set from the board when the game
+   * starts (see stepLimit(Board)).
    */
   
   public int getStepLimit() {
+    return stepLimit;
+  }
+
+  /**
+   * Returns the maximum number of steps for a game starting on the given board: the greedy
+   * upper bound of BoundEstimator, which guarantees the board can be won, plus a quarter
+   * of the gap to the lower bound as slack. Anything that decides whether a game on a
+   * board was won should use this limit.
+   */
+  public static int stepLimit(Board board) {
+    BoundEstimator bounds = new BoundEstimator(board);
+    return Math.max(1, bounds.upperBound() + (bounds.upperBound() - bounds.lowerBound()) / 4);
+  }
+
+  /**
+   * Returns a fixed number of steps for boards of the given size, whatever the board. It
+   * is no longer the rule of the game; it only sizes the move caps of simulation loops, so
+   * that a strategy that stalls cannot run forever.
+   */
+  public static int stepLimit(int size) {
     return size * 25 / 14 + 1;
   }
 
+  /**
+   * Returns a suggestion for the next move: the color that grows the flooded region the
+   * most (Strategy.GREEDY), computed once per distinct position across all games. Unlike
+   * Board.suggest(), which autoplay uses, it depends on the position only, not on the
+   * moves that led to it, and it leaves the board untouched.
+   */
+  
+  public int suggest() {
+    return suggestions.suggest(board);
+  }
+
+  /**
+   * Returns the suggestion cache shared by all games.
+   */
+  
+  public static SuggestionCache getSuggestionCache() {
+    return suggestions;
+  }
+
   /**
    * Processes one step of the game (where the player has selected the given color
    * for their move) using the standard flood function.
@@ -114,6 +205,15 @@ public class Game {
     select(0, color); // k == 0 means to use Board.flood() as the flood function
   }
 
+  /**
+   * Same as select(WaterColor), with a color id, for boards colored from any palette.
+   */
+  
+  public void select(int color) {
+    currentStep++;
+    board.flood(color);
+  }
+
   /**
    * Processes one stop of the game (where the player has selected the give color
    * for their move) using the kth flood function (where k = 0, 1, 2, ...)
@@ -137,30 +237,58 @@ public class Game {
   /**
    * Plays a series of games in batch mode, where player moves are selected 
    * according to the board's suggestions, and the kth flood function is used,
-   * and adds the averaged elapsed time to the thisRun list. 
+   * and adds the averaged elapsed time (in ms) to the thisRun list, and the time of
+   * each game (in ns) to the thisGames list. A game stops as soon as winsNextMove() or
+   * isLost() says how it ends; such games are counted in wonEarly and lostEarly.
    */
   
   private void autoPlay(int k) {
     long gameTime = 0;
+    thisGames = new ArrayList<>();
     for (int i = 0; i < Constants.NUM_GAMES_TO_AUTOPLAY; i++) {
-      long startTime = System.currentTimeMillis();
-      while (!board.fullyFlooded())
+      long startTime = System.nanoTime();
+      // Stop as soon as the outcome is forced: a win with the last color left, or a loss
+      // with more colors left than steps.
+      while (!board.fullyFlooded()) {
+        if (winsNextMove()) {
+          wonEarly++;
+          break;
+        }
+        if (isLost()) {
+          lostEarly++;
+          break;
+        }
         select(k, board.suggest());
-      long endTime = System.currentTimeMillis();
+      }
+      long endTime = System.nanoTime();
       gameTime += (endTime - startTime);
+      thisGames.add(endTime - startTime);
       init();
     }
     gameTime /= Constants.NUM_GAMES_TO_AUTOPLAY;
     // System.out.println(total);
-    thisRun.add(toIntExact(gameTime));
+    thisRun.add(toIntExact(gameTime / 1_000_000));
   }
 
   /**
    * Runs a batch of tests, on boards of varying sizes, through autoPlay(), iterating over 
-   * all defined flood functions, and then displays a graph of run times.
+   * all defined flood functions, and then displays a graph of run times. The boards come
+   * from a randomly chosen seed.
    */
   
   private void batchTest() {
+    batchTest(new Random().nextLong(), null);
+  }
+
+  /**
+   * Same as batchTest(), on the boards generated from the given seed. The timings are
+   * appended to the BatchResults store and, unless baselineRun is null, compared against
+   * the stored run with that id.
+   */
+  
+  private void batchTest(long seed, String baselineRun) {
+    gen = new Random(seed);
+    BatchResults.Run run = BatchResults.Run.start(seed);
     List<List<Integer>> allTimings = new LinkedList<>();
     Class<?> c = Board.class; 
     Class<?>[] argTypes = new Class[] { WaterColor.class };
@@ -171,12 +299,16 @@ public class Game {
         c.getDeclaredMethod(name, argTypes); // throws exception if no such method
         System.out.println("running with " + name + " as the flood function");
         thisRun = new LinkedList<>();
+        wonEarly = lostEarly = 0;
         for (int size = 1; size <= Constants.MAX_BOARD_SIZE_FOR_AUTOPLAY; size++) {
           System.out.println("testing a board of size " + size);
           resize(size);
           autoPlay(k);  // use the kth flood function
+          run.samples.add(BatchResults.Sample.of(name, size, thisGames));
         }
         System.out.println("timings for the above boards: " + thisRun);
+        System.out.println("games stopped early: " + wonEarly + " won with one color left, " + lostEarly
+            + " lost with more colors than steps left");
         allTimings.add(thisRun);
         k++;
       }
@@ -185,8 +317,30 @@ public class Game {
       // All done! No more flood functions left to try.
     }
     finally {
+      record(run, baselineRun);
       SwingUtilities.invokeLater(() -> new TimingGraph(allTimings));
     }
   }
+
+  /**
+   * Stores the given batch run and compares it against the given baseline run, if any.
+   */
+  private static void record(BatchResults.Run run, String baselineRun) {
+    BatchResults results = new BatchResults();
+    try {
+      results.append(run);
+      System.out.println("batch run " + run.id + " saved to " + Constants.BATCH_RESULTS);
+      if (baselineRun == null)
+        return;
+      BatchResults.Run baseline = results.find(baselineRun);
+      if (baseline == null)
+        System.out.println("no baseline run " + baselineRun + " in " + Constants.BATCH_RESULTS);
+      else
+        BatchResults.compare(baseline, run);
+    }
+    catch (IOException | IllegalArgumentException e) {
+      System.out.println("Unable to save the batch results: " + e);
+    }
+  }
 }
 
@@ -0,0 +1,288 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A headless server that hosts many concurrent Flood-It sessions, each backed by its own
+ * non-interactive Game. Clients connect over a local socket and send one command per line;
+ * every command gets exactly one response line, starting with OK or ERR.
+ *
+ *   NEW [size]          OK id                       starts a session (default board size)
+ *   MOVE id color       OK steps limit state        plays a move (state is PLAYING, WON or LOST;
+ *                                                   LOST as soon as the game can no longer be won)
+ *   SUGGEST id          OK color                    asks for a suggestion (see Game.suggest())
+ *   STATUS id           OK steps limit state
+ *   QUIT id             OK                          ends a session
+ *
+ * Sessions are not tied to connections, so one connection may drive many sessions. All
+ * connections are served by a single NIO selector thread, and sessions that see no command
+ * for longer than the idle timeout are evicted.
+ */
+
+public class GameServer implements Runnable {
+  public static final int DEFAULT_PORT = 7777;
+  public static final long DEFAULT_IDLE_MILLIS = 60_000;
+
+  private final ServerSocketChannel server;
+  private final Selector selector;
+  private final long idleNanos;
+  private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+  private final AtomicLong nextId = new AtomicLong(1);
+  private volatile boolean running = true;
+
+  /**
+   * A game together with the time it was last used.
+   */
+  private static class Session {
+    private final Game game;
+    private long lastUsed;
+
+    Session(Game game) {
+      this.game = game;
+      lastUsed = System.nanoTime();
+    }
+  }
+
+  /**
+   * The per-connection state: a partially read command line and the responses that could
+   * not be written yet.
+   */
+  private static class Connection {
+    private final ByteBuffer in = ByteBuffer.allocate(1024);
+    private final StringBuilder line = new StringBuilder();
+    private final Queue<ByteBuffer> out = new ArrayDeque<>();
+  }
+
+  /**
+   * Binds a server to the given port on the loopback interface (0 picks a free port).
+   */
+  public GameServer(int port, long idleMillis) throws IOException {
+    idleNanos = idleMillis * 1_000_000;
+    selector = Selector.open();
+    server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress("localhost", port));
+    server.configureBlocking(false);
+    server.register(selector, SelectionKey.OP_ACCEPT);
+  }
+
+  /**
+   * Returns the port this server is listening on.
+   */
+  public int getPort() {
+    return server.socket().getLocalPort();
+  }
+
+  /**
+   * Returns the number of live sessions.
+   */
+  public int sessionCount() {
+    return sessions.size();
+  }
+
+  /**
+   * Stops the selector loop and closes the server socket.
+   */
+  public void shutdown() {
+    running = false;
+    selector.wakeup();
+  }
+
+  /**
+   * Runs the selector loop until shutdown() is called.
+   */
+  public void run() {
+    long nextSweep = System.nanoTime() + idleNanos / 2;
+    try {
+      while (running) {
+        selector.select(Math.max(1, idleNanos / 2_000_000));
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          try {
+            if (key.isAcceptable())
+              accept();
+            else {
+              if (key.isReadable())
+                read(key);
+              if (key.isValid() && key.isWritable())
+                write(key);
+            }
+          }
+          catch (IOException e) {
+            close(key);
+          }
+        }
+        long now = System.nanoTime();
+        if (now >= nextSweep) {
+          evictIdle(now);
+          nextSweep = now + idleNanos / 2;
+        }
+      }
+    }
+    catch (IOException e) {
+      System.out.println("Game server stopped: " + e);
+    }
+    finally {
+      try {
+        for (SelectionKey key : selector.keys())
+          key.channel().close();
+        selector.close();
+      }
+      catch (IOException e) {
+        // Nothing left to do.
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel = server.accept();
+    if (channel == null)
+      return;
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    channel.register(selector, SelectionKey.OP_READ, new Connection());
+  }
+
+  private void read(SelectionKey key) throws IOException {
+    SocketChannel channel = (SocketChannel) key.channel();
+    Connection conn = (Connection) key.attachment();
+    int n = channel.read(conn.in);
+    if (n < 0) {
+      close(key);
+      return;
+    }
+    conn.in.flip();
+    while (conn.in.hasRemaining()) {
+      char ch = (char) conn.in.get();
+      if (ch == '\n') {
+        respond(key, conn, handle(conn.line.toString().trim()));
+        conn.line.setLength(0);
+      }
+      else if (ch != '\r')
+        conn.line.append(ch);
+    }
+    conn.in.clear();
+  }
+
+  private void respond(SelectionKey key, Connection conn, String response) throws IOException {
+    ByteBuffer buf = ByteBuffer.wrap((response + "\n").getBytes(StandardCharsets.US_ASCII));
+    if (conn.out.isEmpty())
+      ((SocketChannel) key.channel()).write(buf);
+    if (buf.hasRemaining()) {
+      conn.out.add(buf);
+      key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+  }
+
+  private void write(SelectionKey key) throws IOException {
+    SocketChannel channel = (SocketChannel) key.channel();
+    Connection conn = (Connection) key.attachment();
+    while (!conn.out.isEmpty()) {
+      ByteBuffer buf = conn.out.peek();
+      channel.write(buf);
+      if (buf.hasRemaining())
+        return;
+      conn.out.remove();
+    }
+    key.interestOps(SelectionKey.OP_READ);
+  }
+
+  private void close(SelectionKey key) {
+    key.cancel();
+    try {
+      key.channel().close();
+    }
+    catch (IOException e) {
+      // Already gone.
+    }
+  }
+
+  /**
+   * Removes every session that has been idle for longer than the idle timeout.
+   */
+  void evictIdle(long now) {
+    sessions.values().removeIf(session -> now - session.lastUsed > idleNanos);
+  }
+
+  /**
+   * Executes one command line and returns its response line.
+   */
+  String handle(String line) {
+    String[] words = line.split("\\s+");
+    try {
+      switch (words[0].toUpperCase()) {
+      case "NEW": {
+        int size = words.length > 1 ? Integer.parseInt(words[1]) : Constants.DEFAULT_SIZE;
+        if (size < 1 || size > Constants.MAX_DIM)
+          return "ERR size must be between 1 and " + Constants.MAX_DIM;
+        long id = nextId.getAndIncrement();
+        sessions.put(id, new Session(new Game(size)));
+        return "OK " + id;
+      }
+      case "MOVE": {
+        Session session = lookup(words);
+        Game game = session.game;
+        if (game.getBoard().fullyFlooded() || game.isLost())
+          return "ERR game over";
+        game.select(WaterColor.valueOf(words[2].toUpperCase()));
+        return "OK " + status(game);
+      }
+      case "SUGGEST":
+        return "OK " + Palette.name(lookup(words).game.suggest());
+      case "STATUS":
+        return "OK " + status(lookup(words).game);
+      case "QUIT":
+        lookup(words);
+        sessions.remove(Long.parseLong(words[1]));
+        return "OK";
+      default:
+        return "ERR unknown command " + words[0];
+      }
+    }
+    catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+      return "ERR malformed command: " + line;
+    }
+    catch (IllegalStateException e) {
+      return "ERR " + e.getMessage();
+    }
+  }
+
+  private Session lookup(String[] words) {
+    Session session = sessions.get(Long.parseLong(words[1]));
+    if (session == null)
+      throw new IllegalStateException("no such session " + words[1]);
+    session.lastUsed = System.nanoTime();
+    return session;
+  }
+
+  private static String status(Game game) {
+    String state = game.getBoard().fullyFlooded() ? "WON" : game.isLost() ? "LOST" : "PLAYING";
+    return game.getSteps() + " " + game.getStepLimit() + " " + state;
+  }
+
+  /**
+   * Runs a server in the foreground.
+   *
+   * Usage: GameServer [port [idleMillis]]
+   */
+  public static void main(String... args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    long idle = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_IDLE_MILLIS;
+    GameServer server = new GameServer(port, idle);
+    System.out.println(Constants.TITLE + " server listening on port " + server.getPort());
+    server.run();
+    System.out.println(Game.getSuggestionCache());
+  }
+}
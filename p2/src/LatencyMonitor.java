@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Measures how long a click takes to show on screen. Each input event is timestamped when
+ * its handler starts, when the model update (the move) is done, and when the first paint
+ * after the update is done. Events are matched first in, first out, so inputs that are
+ * queued before their move is made (as by FloodCanvas) are measured from the click.
+ *
+ * Per board size, the monitor keeps rolling histograms of the last WINDOW latencies from
+ * input to model update and from input to paint. Histogram buckets are log-linear (eight
+ * per power of two), so percentiles are within 1/8 of the true value.
+ *
+ * All methods are called on the event dispatch thread.
+ */
+
+public class LatencyMonitor {
+  public static final int WINDOW = 1000;
+  private static final int SUB_BITS = 3, SUB = 1 << SUB_BITS, BUCKETS = 64 * SUB;
+  private static final int MAX_PENDING = 64;
+
+  /**
+   * The monitor shared by every GUI in this JVM, so histograms outlive restarts.
+   */
+  public static final LatencyMonitor GLOBAL = new LatencyMonitor();
+
+  /**
+   * A histogram of the last WINDOW samples added.
+   */
+  static class Rolling {
+    private final int[] counts = new int[BUCKETS];
+    private final short[] recent = new short[WINDOW];  // the bucket of each sample in the window
+    private long total;
+
+    void add(long nanos) {
+      int b = bucket(nanos);
+      if (total >= WINDOW)
+        counts[recent[(int) (total % WINDOW)]]--;
+      recent[(int) (total % WINDOW)] = (short) b;
+      counts[b]++;
+      total++;
+    }
+
+    /**
+     * Returns the number of samples in the window.
+     */
+    int size() {
+      return (int) Math.min(total, WINDOW);
+    }
+
+    /**
+     * Returns the smallest value of the bucket holding the given percentile (0 to 1) of the
+     * window, in ns, or 0 if the window is empty.
+     */
+    long percentile(double p) {
+      int rank = (int) Math.ceil(p * size());
+      for (int b = 0, seen = 0; b < BUCKETS; b++)
+        if ((seen += counts[b]) >= Math.max(1, rank))
+          return lowest(b);
+      return 0;
+    }
+  }
+
+  /**
+   * Returns the bucket of the given value: values below SUB have their own bucket, and
+   * every power of two above is split into SUB buckets.
+   */
+  static int bucket(long nanos) {
+    if (nanos < SUB)
+      return (int) Math.max(0, nanos);
+    int e = 63 - Long.numberOfLeadingZeros(nanos);
+    return (e - SUB_BITS + 1) * SUB + (int) ((nanos >>> (e - SUB_BITS)) & (SUB - 1));
+  }
+
+  /**
+   * Returns the smallest value in the given bucket.
+   */
+  static long lowest(int bucket) {
+    if (bucket < SUB)
+      return bucket;
+    int e = bucket / SUB + SUB_BITS - 1;
+    return (long) (SUB + bucket % SUB) << (e - SUB_BITS);
+  }
+
+  private final Map<Integer, Rolling[]> bySize = new TreeMap<>();  // size -> { model, paint }
+  private final long[] inputAt = new long[MAX_PENDING];
+  private final int[] sizeOf = new int[MAX_PENDING];
+  private long head, modeled, tail;  // pending inputs: [head, modeled) are updated, [modeled, tail) not yet
+
+  /**
+   * Records an input event on a board of the given size.
+   */
+  public void input(int size) {
+    if (tail - head == MAX_PENDING)
+      head++;  // never painted (e.g. the window was closed); forget it
+    modeled = Math.max(modeled, head);
+    inputAt[(int) (tail % MAX_PENDING)] = System.nanoTime();
+    sizeOf[(int) (tail++ % MAX_PENDING)] = size;
+  }
+
+  /**
+   * Records that the model update of the oldest input not yet applied is done.
+   */
+  public void modelUpdated() {
+    if (modeled == tail)
+      return;
+    int k = (int) (modeled++ % MAX_PENDING);
+    stats(sizeOf[k])[0].add(System.nanoTime() - inputAt[k]);
+  }
+
+  /**
+   * Forgets the given number of the newest inputs whose model update has not started, e.g.
+   * queued clicks dropped when the game ends, so that later updates are not matched with
+   * them.
+   */
+  public void cancel(int n) {
+    tail -= Math.min(n, tail - modeled);
+  }
+
+  /**
+   * Records that a paint is done: every input whose model update is done is now visible.
+   */
+  public void painted() {
+    if (head == modeled)
+      return;
+    long now = System.nanoTime();
+    for (; head < modeled; head++) {
+      int k = (int) (head % MAX_PENDING);
+      stats(sizeOf[k])[1].add(now - inputAt[k]);
+    }
+  }
+
+  private Rolling[] stats(int size) {
+    return bySize.computeIfAbsent(size, s -> new Rolling[] { new Rolling(), new Rolling() });
+  }
+
+  /**
+   * Returns a table of the latency percentiles per board size, in ms.
+   */
+  public String report() {
+    StringBuilder ans = new StringBuilder("size\tstage\tevents\tp50\tp90\tp99\tmax (ms, last " + WINDOW + ")\n");
+    for (Map.Entry<Integer, Rolling[]> e : bySize.entrySet()) {
+      String[] stages = { "model", "paint" };
+      for (int s = 0; s < 2; s++) {
+        Rolling r = e.getValue()[s];
+        ans.append(String.format("%d\t%s\t%d\t%.2f\t%.2f\t%.2f\t%.2f%n", e.getKey(), stages[s], r.size(),
+            r.percentile(0.5) / 1e6, r.percentile(0.9) / 1e6, r.percentile(0.99) / 1e6, r.percentile(1) / 1e6));
+      }
+    }
+    return ans.toString();
+  }
+
+  /**
+   * Writes the report, and the full histograms (bucket start in ns and count, nonzero
+   * buckets only), to the given file.
+   */
+  public void dump(String file) throws IOException {
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(file)))) {
+      out.print(report());
+      for (Map.Entry<Integer, Rolling[]> e : bySize.entrySet())
+        for (int s = 0; s < 2; s++) {
+          out.println();
+          out.println("# size " + e.getKey() + (s == 0 ? " model" : " paint"));
+          int[] counts = e.getValue()[s].counts;
+          for (int b = 0; b < BUCKETS; b++)
+            if (counts[b] > 0)
+              out.println(lowest(b) + "\t" + counts[b]);
+        }
+    }
+  }
+}
@@ -0,0 +1,189 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Drives a GameServer with a growing number of concurrent sessions and reports the move
+ * throughput and the tail latency of each request.
+ *
+ * Sessions are spread over a fixed number of client connections. Every client thread owns
+ * one connection and round-robins over its sessions: it asks for a suggestion, plays it,
+ * and starts a new game in the same slot whenever a game is won or lost.
+ */
+
+public class LoadGenerator {
+  private static final int MAX_CONNECTIONS = 64;
+
+  private final String host;
+  private final int port;
+  private final int boardSize;
+  private final long millis;
+
+  public LoadGenerator(String host, int port, int boardSize, long millis) {
+    this.host = host;
+    this.port = port;
+    this.boardSize = boardSize;
+    this.millis = millis;
+  }
+
+  /**
+   * The outcome of one client thread: the number of moves played and the latency of every
+   * request, in nanoseconds.
+   */
+  private static class Result {
+    private long moves;
+    private long[] latencies = new long[1024];
+    private int count;
+
+    void record(long nanos) {
+      if (count == latencies.length)
+        latencies = Arrays.copyOf(latencies, 2 * count);
+      latencies[count++] = nanos;
+    }
+  }
+
+  /**
+   * One client connection, speaking the line protocol synchronously.
+   */
+  private class Client implements AutoCloseable {
+    private final Socket socket;
+    private final BufferedReader in;
+    private final PrintWriter out;
+    private final Result result;
+
+    Client(Result result) throws IOException {
+      this.result = result;
+      socket = new Socket(host, port);
+      socket.setTcpNoDelay(true);
+      in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+      out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Sends a command and returns the response without its leading OK.
+     */
+    String call(String command) throws IOException {
+      long start = System.nanoTime();
+      out.print(command + "\n");
+      out.flush();
+      String response = in.readLine();
+      result.record(System.nanoTime() - start);
+      if (response == null || !response.startsWith("OK"))
+        throw new IOException(command + " failed: " + response);
+      return response.substring(2).trim();
+    }
+
+    public void close() throws IOException {
+      socket.close();
+    }
+  }
+
+  /**
+   * Plays the given number of sessions, spread over one connection per client, for the
+   * configured duration.
+   */
+  private Result play(int sessions, int clients) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(clients);
+    List<Future<Result>> futures = new ArrayList<>();
+    long deadline = System.currentTimeMillis() + millis;
+    for (int c = 0; c < clients; c++) {
+      int mine = sessions / clients + (c < sessions % clients ? 1 : 0);
+      futures.add(pool.submit(() -> {
+        Result result = new Result();
+        try (Client client = new Client(result)) {
+          String[] ids = new String[mine];
+          for (int i = 0; i < mine; i++)
+            ids[i] = client.call("NEW " + boardSize);
+          while (System.currentTimeMillis() < deadline)
+            for (int i = 0; i < mine; i++) {
+              String color = client.call("SUGGEST " + ids[i]);
+              String status = client.call("MOVE " + ids[i] + " " + color);
+              result.moves++;
+              if (!status.endsWith("PLAYING")) {
+                client.call("QUIT " + ids[i]);
+                ids[i] = client.call("NEW " + boardSize);
+              }
+            }
+          for (String id : ids)
+            client.call("QUIT " + id);
+        }
+        return result;
+      }));
+    }
+    Result total = new Result();
+    for (Future<Result> future : futures) {
+      Result result = future.get();
+      total.moves += result.moves;
+      for (int i = 0; i < result.count; i++)
+        total.record(result.latencies[i]);
+    }
+    pool.shutdown();
+    return total;
+  }
+
+  /**
+   * Runs one load step per session count and prints a table of the results.
+   */
+  public void run(int... sessionCounts) throws Exception {
+    System.out.println("sessions\tclients\tmoves/s\tp50(us)\tp99(us)\tp99.9(us)\tmax(us)");
+    for (int sessions : sessionCounts) {
+      int clients = Math.min(sessions, MAX_CONNECTIONS);
+      Result result = play(sessions, clients);
+      long[] lat = Arrays.copyOf(result.latencies, result.count);
+      Arrays.sort(lat);
+      System.out.printf("%d\t%d\t%.0f\t%.1f\t%.1f\t%.1f\t%.1f%n", sessions, clients,
+          result.moves * 1000.0 / millis, percentile(lat, 0.50), percentile(lat, 0.99),
+          percentile(lat, 0.999), lat.length == 0 ? 0.0 : lat[lat.length - 1] / 1e3);
+    }
+  }
+
+  /**
+   * Returns the given percentile of the sorted latencies, in microseconds.
+   */
+  private static double percentile(long[] sorted, double p) {
+    if (sorted.length == 0)
+      return 0;
+    return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))] / 1e3;
+  }
+
+  /**
+   * Runs the load generator against a server on the given port, or against an embedded
+   * server on a free local port when no port is given.
+   *
+   * Usage: LoadGenerator [port [boardSize [millisPerStep [sessions ...]]]]
+   */
+  public static void main(String... args) throws Exception {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+    int boardSize = args.length > 1 ? Integer.parseInt(args[1]) : Constants.DEFAULT_SIZE;
+    long millis = args.length > 2 ? Long.parseLong(args[2]) : 5_000;
+    int[] sessions = { 1, 10, 100, 1000, 5000 };
+    if (args.length > 3) {
+      sessions = new int[args.length - 3];
+      for (int i = 3; i < args.length; i++)
+        sessions[i - 3] = Integer.parseInt(args[i]);
+    }
+    GameServer embedded = null;
+    if (port == 0) {
+      embedded = new GameServer(0, GameServer.DEFAULT_IDLE_MILLIS);
+      port = embedded.getPort();
+      Thread thread = new Thread(embedded, "game-server");
+      thread.setDaemon(true);
+      thread.start();
+    }
+    new LoadGenerator("localhost", port, boardSize, millis).run(sessions);
+    if (embedded != null) {
+      embedded.shutdown();
+      System.out.println(Game.getSuggestionCache());
+    }
+  }
+}
@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A strategy that looks a fixed number of moves ahead and plays the first move of the
+ * sequence that floods the most tiles, evaluating the candidate moves in parallel on a
+ * ForkJoinPool.
+ *
+ * Each candidate color, and each of its replies above the last level, is a task of its own
+ * with its own copy of the board, so the pool's work stealing spreads the subtrees over
+ * the cores. The last level needs no copies: Board.gains() measures every color at once.
+ * A sequence that floods the whole board scores one point for every move it leaves
+ * unused, so earlier wins are preferred. Results are combined in color order and ties go
+ * to the lowest color id, so the choice does not depend on how the tasks were scheduled.
+ */
+
+public class LookaheadSearch implements Strategy {
+  private final int depth;
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates a search of the given depth that runs on the common pool.
+   */
+  public LookaheadSearch(int depth) {
+    this(depth, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a search of the given depth (at least 1) that runs on the given pool.
+   */
+  public LookaheadSearch(int depth, ForkJoinPool pool) {
+    if (depth < 1)
+      throw new IllegalArgumentException("depth must be at least 1: " + depth);
+    this.depth = depth;
+    this.pool = pool;
+  }
+
+  public int choose(Board board, Random gen) {
+    return bestColor(board);
+  }
+
+  /**
+   * Returns the color id of the best first move.
+   */
+  public int bestColor(Board board) {
+    long[] scores = pool.invoke(new Evaluate(board, depth)).scores;
+    int best = 0;
+    for (int color = 1; color < scores.length; color++)
+      if (scores[color] > scores[best])
+        best = color;
+    return best;
+  }
+
+  /**
+   * The scores of the moves available on a board, given the number of moves left to look
+   * ahead. A move that absorbs nothing scores -1, so it is never chosen over one that
+   * does.
+   */
+  private static class Evaluate extends RecursiveTask<Evaluate> {
+    private static final long serialVersionUID = 1L;
+
+    private final Board board;
+    private final int movesLeft;
+    private long[] scores;
+
+    Evaluate(Board board, int movesLeft) {
+      this.board = board;
+      this.movesLeft = movesLeft;
+    }
+
+    /**
+     * Returns the best score among the moves, or the board's own score if none absorbs
+     * anything.
+     */
+    long best() {
+      long best = score(board, movesLeft);
+      for (long score : scores)
+        best = Math.max(best, score);
+      return best;
+    }
+
+    protected Evaluate compute() {
+      int[] gain = board.gains();
+      scores = new long[gain.length];
+      List<Evaluate> children = new ArrayList<>();
+      int[] childColor = new int[gain.length];
+      for (int color = 0; color < gain.length; color++) {
+        if (gain[color] == 0) {
+          scores[color] = -1;
+          continue;
+        }
+        if (movesLeft == 1 || board.floodedSize() + gain[color] == board.getSize() * board.getSize()) {
+          scores[color] = score(board.floodedSize() + gain[color], board, movesLeft - 1);
+          continue;
+        }
+        Board copy = new Board(board);
+        copy.flood(color);
+        childColor[children.size()] = color;
+        children.add(new Evaluate(copy, movesLeft - 1));
+      }
+      invokeAll(children);
+      for (int k = 0; k < children.size(); k++)
+        scores[childColor[k]] = children.get(k).best();
+      return this;
+    }
+  }
+
+  /**
+   * Returns the score of the given board with the given number of moves left unplayed.
+   */
+  private static long score(Board board, int movesLeft) {
+    return score(board.floodedSize(), board, movesLeft);
+  }
+
+  private static long score(int flooded, Board board, int movesLeft) {
+    return flooded == board.getSize() * board.getSize() ? flooded + movesLeft : flooded;
+  }
+
+  /**
+   * Times the search on the same boards with 1, 2, 4, ... pool threads, checks that every
+   * pool size picks the same moves, and reports the speedups.
+   *
+   * Usage: LookaheadSearch [depth [size [boards]]]
+   */
+  public static void main(String... args) {
+    int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int size = args.length > 1 ? Integer.parseInt(args[1]) : Constants.DEFAULT_SIZE;
+    int count = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+    int cores = Runtime.getRuntime().availableProcessors();
+    List<Integer> threads = new ArrayList<>();
+    for (int p = 1; p < cores; p *= 2)
+      threads.add(p);
+    threads.add(cores);
+
+    Board[] boards = new Board[count];
+    Random gen = new Random(38);
+    for (int i = 0; i < count; i++)
+      boards[i] = new Board(size, gen);
+    new LookaheadSearch(depth).bestColor(boards[0]);  // warm up
+
+    System.out.println("depth " + depth + ", size " + size + ", " + count + " boards");
+    System.out.println("threads\tms/suggest\tspeedup");
+    int[] expected = null;
+    double single = Double.NaN;
+    for (int p : threads) {
+      ForkJoinPool pool = new ForkJoinPool(p);
+      LookaheadSearch search = new LookaheadSearch(depth, pool);
+      int[] chosen = new int[count];
+      long start = System.nanoTime();
+      for (int i = 0; i < count; i++)
+        chosen[i] = search.bestColor(boards[i]);
+      double elapsed = (System.nanoTime() - start) / 1e6 / count;
+      pool.shutdown();
+      if (expected == null) {
+        expected = chosen;
+        single = elapsed;
+      }
+      else if (!Arrays.equals(expected, chosen))
+        System.out.println("Pool size " + p + " chose different moves!");
+      System.out.printf("%d\t%.2f\t%.2f%n", p, elapsed, single / elapsed);
+    }
+  }
+}
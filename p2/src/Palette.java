@@ -0,0 +1,96 @@
+import java.awt.Color;
+import java.util.Random;
+
+/**
+ * A Palette is the set of colors a board is filled with. Colors are small integer ids,
+ * 0, 1, ..., size() - 1, so that sets of colors fit in an int bitmask (bit i stands for
+ * color i) and per-color counts fit in an array indexed by color.
+ *
+ * The first five ids are the WaterColor ordinals, so the default palette of five colors
+ * is interchangeable with WaterColor. Larger palettes add generated colors.
+ */
+
+public class Palette {
+  public static final int MIN_COLORS = 3;
+  public static final int MAX_COLORS = 32;
+
+  /**
+   * The five water colors.
+   */
+  public static final Palette DEFAULT = new Palette(WaterColor.values().length);
+
+  private static final Color[] COLORS = new Color[MAX_COLORS];
+  private static final String[] NAMES = new String[MAX_COLORS];
+  static {
+    WaterColor[] water = WaterColor.values();
+    for (int id = 0; id < MAX_COLORS; id++) {
+      if (id < water.length) {
+        COLORS[id] = water[id].get();
+        NAMES[id] = water[id].toString();
+      }
+      else {
+        // Spread the extra hues by the golden ratio so that neighbors in id differ.
+        float hue = (float) ((id * 0.618033988749895) % 1.0);
+        COLORS[id] = Color.getHSBColor(hue, 0.55f + 0.45f * (id % 2), 0.95f - 0.3f * (id % 3) / 2);
+        NAMES[id] = "color" + id;
+      }
+    }
+  }
+
+  private final int size;
+
+  /**
+   * Constructs a palette of the given number of colors.
+   */
+  public Palette(int size) {
+    if (size < MIN_COLORS || size > MAX_COLORS)
+      throw new IllegalArgumentException("palette size must be between " + MIN_COLORS + " and " + MAX_COLORS);
+    this.size = size;
+  }
+
+  /**
+   * Returns the number of colors in this palette.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the bitmask of all colors in this palette.
+   */
+  public int all() {
+    return size == 32 ? -1 : (1 << size) - 1;
+  }
+
+  /**
+   * Returns a color id, selected with equal probability using the given generator. For the
+   * default palette this draws the same colors as WaterColor.pickOne(gen).
+   */
+  public int pickOne(Random gen) {
+    return gen.nextInt(size);
+  }
+
+  /**
+   * Returns the java.awt.Color object used to draw the given color id.
+   */
+  public static Color get(int id) {
+    return COLORS[id];
+  }
+
+  /**
+   * Returns the name of the given color id.
+   */
+  public static String name(int id) {
+    return NAMES[id];
+  }
+
+  /**
+   * Returns a string representation of this palette.
+   */
+  public String toString() {
+    StringBuilder ans = new StringBuilder("[");
+    for (int id = 0; id < size; id++)
+      ans.append(id == 0 ? "" : ", ").append(name(id));
+    return ans.append("]").toString();
+  }
+}
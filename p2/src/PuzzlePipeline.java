@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A streaming pipeline that fills a Corpus with puzzles of controlled difficulty. Four
+ * stages run concurrently and hand work along bounded queues, so a slow stage holds back
+ * the ones before it instead of letting work pile up in memory:
+ *
+ *   seeds -> generate (boards) -> score (BoundEstimator) -> store (accept, bucket, append)
+ *
+ * A board's difficulty is its BoundEstimator upper bound. The store stage accepts a board
+ * when its difficulty lies in the requested range and that bucket is not full yet, and the
+ * pipeline stops when every bucket is full or the candidate budget is spent. Buckets count
+ * the puzzles the corpus already holds, and seeds already stored are skipped, so running
+ * the pipeline again only tops up the buckets.
+ */
+
+public class PuzzlePipeline {
+  private static final int QUEUE_CAPACITY = 256;
+
+  private final int size, minMoves, maxMoves, perBucket;
+  private final long firstSeed, budget;
+  private final int generators, scorers;
+  private final Corpus corpus;
+  private final Set<Long> stored = new HashSet<>();  // seeds already in the requested buckets; read-only once running
+
+  private final BlockingQueue<Long> seeds = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final BlockingQueue<Candidate> boards = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final BlockingQueue<Corpus.Entry> scored = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Stage seedStage = new Stage("seed"), generateStage = new Stage("generate"),
+      scoreStage = new Stage("score"), storeStage = new Stage("store");
+  private final AtomicLong finishedGenerators = new AtomicLong(), finishedScorers = new AtomicLong();
+  private volatile boolean done;
+
+  // Marks the end of a stream; each stage forwards one per downstream worker.
+  private static final long END = Long.MIN_VALUE;
+  private static final Candidate END_BOARD = new Candidate(END, null);
+  private static final Corpus.Entry END_ENTRY = new Corpus.Entry(0, END, 0, 0);
+
+  /**
+   * A generated board and the seed it came from.
+   */
+  private static class Candidate {
+    final long seed;
+    final Board board;
+
+    Candidate(long seed, Board board) {
+      this.seed = seed;
+      this.board = board;
+    }
+  }
+
+  /**
+   * Per-stage counters: items processed and time spent working (not waiting on queues).
+   */
+  private static class Stage {
+    final String name;
+    final AtomicLong items = new AtomicLong(), busyNanos = new AtomicLong();
+
+    Stage(String name) {
+      this.name = name;
+    }
+
+    void count(long startNanos) {
+      items.incrementAndGet();
+      busyNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+  }
+
+  public PuzzlePipeline(Corpus corpus, int size, int minMoves, int maxMoves, int perBucket, long firstSeed, long budget) {
+    this.corpus = corpus;
+    this.size = size;
+    this.minMoves = minMoves;
+    this.maxMoves = maxMoves;
+    this.perBucket = perBucket;
+    this.firstSeed = firstSeed;
+    this.budget = budget;
+    int cores = Runtime.getRuntime().availableProcessors();
+    generators = Math.max(1, cores / 2);
+    scorers = Math.max(1, cores - generators);
+  }
+
+  /**
+   * Runs the pipeline to completion and returns the number of puzzles added per difficulty,
+   * indexed by moves - minMoves.
+   */
+  public int[] run() throws InterruptedException, IOException {
+    int[] held = new int[maxMoves - minMoves + 1];
+    for (int b = 0; b < held.length; b++)
+      for (Corpus.Entry e : corpus.load(size, minMoves + b)) {
+        stored.add(e.seed);
+        held[b]++;
+      }
+    int[] accepted = new int[held.length];
+    List<Thread> threads = new ArrayList<>();
+    long start = System.nanoTime();
+    threads.add(start("seeds", this::produceSeeds));
+    for (int i = 0; i < generators; i++)
+      threads.add(start("generate-" + i, this::generate));
+    for (int i = 0; i < scorers; i++)
+      threads.add(start("score-" + i, this::score));
+    threads.add(start("store", () -> store(held, accepted)));
+    for (Thread thread : threads)
+      thread.join();
+    report(System.nanoTime() - start);
+    return accepted;
+  }
+
+  private Thread start(String name, Work work) {
+    Thread thread = new Thread(() -> {
+      try {
+        work.run();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, name);
+    thread.start();
+    return thread;
+  }
+
+  private interface Work {
+    void run() throws InterruptedException;
+  }
+
+  private void produceSeeds() throws InterruptedException {
+    for (long seed = firstSeed; seed < firstSeed + budget && !done; seed++) {
+      seedStage.count(System.nanoTime());
+      seeds.put(seed);
+    }
+    for (int i = 0; i < generators; i++)
+      seeds.put(END);
+  }
+
+  private void generate() throws InterruptedException {
+    for (long seed = seeds.take(); seed != END; seed = seeds.take()) {
+      if (done || stored.contains(seed))
+        continue;  // drain, or already in the corpus
+      long t = System.nanoTime();
+      Candidate candidate = new Candidate(seed, Corpus.board(size, seed));
+      generateStage.count(t);
+      boards.put(candidate);
+    }
+    // The last generator to finish tells the scorers.
+    if (finishedGenerators.incrementAndGet() == generators)
+      for (int i = 0; i < scorers; i++)
+        boards.put(END_BOARD);
+  }
+
+  private void score() throws InterruptedException {
+    for (Candidate c = boards.take(); c != END_BOARD; c = boards.take()) {
+      if (done)
+        continue;
+      long t = System.nanoTime();
+      BoundEstimator bounds = new BoundEstimator(c.board);
+      Corpus.Entry entry = new Corpus.Entry(size, c.seed, bounds.lowerBound(), bounds.upperBound());
+      scoreStage.count(t);
+      scored.put(entry);
+    }
+    if (finishedScorers.incrementAndGet() == scorers)
+      scored.put(END_ENTRY);
+  }
+
+  /**
+   * Accepts scored boards into buckets that hold fewer than perBucket puzzles, counting the
+   * given ones already held, and appends them to the corpus in batches.
+   */
+  private void store(int[] held, int[] accepted) throws InterruptedException {
+    List<Corpus.Entry> batch = new ArrayList<>();
+    int full = 0;
+    for (int count : held)
+      if (count >= perBucket)
+        full++;
+    done |= full == held.length;
+    for (Corpus.Entry e = scored.take(); e != END_ENTRY; e = scored.take()) {
+      long t = System.nanoTime();
+      int bucket = e.upper - minMoves;
+      if (!done && bucket >= 0 && bucket < held.length && held[bucket] < perBucket) {
+        batch.add(e);
+        accepted[bucket]++;
+        if (++held[bucket] == perBucket && ++full == held.length)
+          done = true;
+      }
+      if (batch.size() >= 64 || (done && !batch.isEmpty()))
+        flush(batch);
+      storeStage.count(t);
+    }
+    flush(batch);
+  }
+
+  private void flush(List<Corpus.Entry> batch) {
+    try {
+      corpus.append(batch);
+    }
+    catch (IOException e) {
+      System.out.println("Unable to append to the corpus: " + e);
+      done = true;
+    }
+    batch.clear();
+  }
+
+  private void report(long elapsedNanos) {
+    double seconds = elapsedNanos / 1e9;
+    System.out.printf("%-10s%12s%14s%14s%n", "stage", "items", "items/s", "busy items/s");
+    for (Stage stage : new Stage[] { seedStage, generateStage, scoreStage, storeStage }) {
+      long items = stage.items.get();
+      double busy = stage.busyNanos.get() / 1e9;
+      System.out.printf("%-10s%12d%14.0f%14.0f%n", stage.name, items, items / seconds, busy == 0 ? 0 : items / busy);
+    }
+  }
+
+  /**
+   * Usage: PuzzlePipeline [size [minMoves [maxMoves [perBucket [firstSeed [budget]]]]]]
+   */
+  public static void main(String... args) throws InterruptedException, IOException {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : Constants.DEFAULT_SIZE;
+    int minMoves = args.length > 1 ? Integer.parseInt(args[1]) : 18;
+    int maxMoves = args.length > 2 ? Integer.parseInt(args[2]) : 24;
+    int perBucket = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+    long firstSeed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+    long budget = args.length > 5 ? Long.parseLong(args[5]) : 1_000_000;
+    int[] accepted = new PuzzlePipeline(new Corpus(), size, minMoves, maxMoves, perBucket, firstSeed, budget).run();
+    for (int i = 0; i < accepted.length; i++)
+      System.out.println("size " + size + ", " + (minMoves + i) + " moves: " + accepted[i] + " puzzles added");
+  }
+}
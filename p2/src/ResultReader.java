@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Reads back the game results stored by a ResultSink and aggregates them per variant and
+ * board size, without loading the records onto the heap.
+ *
+ * Every segment is memory-mapped read-only and cut into blocks of BLOCK_RECORDS records.
+ * The blocks are aggregated in parallel, each into its own totals, and the totals are
+ * merged at the end, so the heap only holds a few small sets of totals whatever the
+ * number of records.
+ */
+
+public class ResultReader {
+  private static final int BLOCK_RECORDS = 1 << 16;
+
+  private final Path dir;
+
+  /**
+   * Totals for one variant on one board size.
+   */
+  public static class Totals {
+    public long games, wins, moves, nanos;
+    public long minNanos = Long.MAX_VALUE, maxNanos = Long.MIN_VALUE;
+
+    void add(int moves, long nanos, boolean win) {
+      games++;
+      if (win)
+        wins++;
+      this.moves += moves;
+      this.nanos += nanos;
+      minNanos = Math.min(minNanos, nanos);
+      maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    void addAll(Totals that) {
+      games += that.games;
+      wins += that.wins;
+      moves += that.moves;
+      nanos += that.nanos;
+      minNanos = Math.min(minNanos, that.minNanos);
+      maxNanos = Math.max(maxNanos, that.maxNanos);
+    }
+  }
+
+  public ResultReader(Path dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * Returns the totals of every record in the store, keyed by variant << 32 | size, in key
+   * order.
+   */
+  public Map<Long, Totals> aggregate() throws IOException {
+    List<MappedByteBuffer> segments = new ArrayList<>();
+    List<int[]> blocks = new ArrayList<>();  // {segment, first record, end record}
+    for (int s = 0; Files.exists(ResultSink.segmentFile(dir, s)); s++) {
+      MappedByteBuffer buffer;
+      try (FileChannel channel = FileChannel.open(ResultSink.segmentFile(dir, s), StandardOpenOption.READ)) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt(0) != ResultSink.MAGIC || buffer.getInt(4) != ResultSink.RECORD_BYTES)
+        throw new IOException(ResultSink.segmentFile(dir, s) + " is not a result segment");
+      int count = (int) buffer.getLong(ResultSink.COUNT_OFFSET);
+      segments.add(buffer);
+      for (int first = 0; first < count; first += BLOCK_RECORDS)
+        blocks.add(new int[] { s, first, Math.min(count, first + BLOCK_RECORDS) });
+    }
+    return IntStream.range(0, blocks.size()).parallel().collect(
+        TreeMap<Long, Totals>::new,
+        (totals, b) -> {
+          int[] block = blocks.get(b);
+          MappedByteBuffer buffer = segments.get(block[0]);
+          for (int r = block[1]; r < block[2]; r++) {
+            int at = ResultSink.HEADER_BYTES + r * ResultSink.RECORD_BYTES;
+            long key = (long) buffer.getShort(at + 24) << 32 | buffer.getInt(at + 16);
+            totals.computeIfAbsent(key, k -> new Totals())
+                .add(buffer.getInt(at + 20), buffer.getLong(at + 8), buffer.get(at + 26) != 0);
+          }
+        },
+        (a, b) -> b.forEach((key, t) -> a.computeIfAbsent(key, k -> new Totals()).addAll(t)));
+  }
+
+  /**
+   * Aggregates the store in the given directory (Constants.RESULTS_DIR by default) and
+   * prints one row per variant and size.
+   *
+   * Usage: ResultReader [dir]
+   */
+  public static void main(String... args) throws IOException {
+    Path dir = Paths.get(args.length > 0 ? args[0] : Constants.RESULTS_DIR);
+    long start = System.nanoTime();
+    Map<Long, Totals> totals = new ResultReader(dir).aggregate();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long records = 0;
+    System.out.println("variant\tsize\tgames\twin%\tmoves\tmean(us)\tmin(us)\tmax(us)");
+    for (Map.Entry<Long, Totals> e : totals.entrySet()) {
+      Totals t = e.getValue();
+      records += t.games;
+      System.out.printf("%d\t%d\t%d\t%.2f\t%.2f\t%.1f\t%.1f\t%.1f%n", e.getKey() >> 32, (int) (long) e.getKey(),
+          t.games, 100.0 * t.wins / t.games, (double) t.moves / t.games, t.nanos / 1e3 / t.games,
+          t.minNanos / 1e3, t.maxNanos / 1e3);
+    }
+    System.out.printf("%d records read in %.2f s (%.0f records/s)%n", records, seconds, records / seconds);
+  }
+}
@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only store of game results as fixed-width binary records in memory-mapped
+ * segment files, for simulations too large to keep their results on the heap.
+ *
+ * The store is a directory of files segment-00000.bin, segment-00001.bin, ... Each
+ * segment holds a HEADER_BYTES header followed by up to SEGMENT_RECORDS records of
+ * RECORD_BYTES bytes, little-endian:
+ *
+ *   offset  0  long   seed      the seed of the game's board
+ *   offset  8  long   nanos     the time the game took
+ *   offset 16  int    size      the board size
+ *   offset 20  int    moves     the number of moves played
+ *   offset 24  short  variant   which strategy or flood function played
+ *   offset 26  byte   win       1 if the game was won, 0 otherwise
+ *   offset 27  (5 bytes of padding)
+ *
+ * The header holds MAGIC, the record size and the number of records written so far, which
+ * is updated after every record. When a segment is full the sink rolls over to a new one.
+ * Opening a sink on an existing store continues after its last record. ResultReader reads
+ * the records back.
+ */
+
+public class ResultSink implements AutoCloseable {
+  public static final int MAGIC = 0x464C4452;  // "FLDR"
+  public static final int HEADER_BYTES = 32, RECORD_BYTES = 32;
+  public static final int SEGMENT_RECORDS = 1 << 20;
+  static final int COUNT_OFFSET = 8;
+
+  private final Path dir;
+  private int segment;
+  private MappedByteBuffer buffer;
+  private long count;  // records in the current segment
+  private long written;
+
+  /**
+   * Opens the store in the given directory, creating it if needed.
+   */
+  public ResultSink(Path dir) throws IOException {
+    this.dir = dir;
+    Files.createDirectories(dir);
+    while (Files.exists(segmentFile(dir, segment + 1)))
+      segment++;
+    open(segment);
+  }
+
+  /**
+   * Opens the store in Constants.RESULTS_DIR.
+   */
+  public ResultSink() throws IOException {
+    this(Paths.get(Constants.RESULTS_DIR));
+  }
+
+  /**
+   * Returns the path of the given segment of the store in the given directory.
+   */
+  static Path segmentFile(Path dir, int segment) {
+    return dir.resolve(String.format("segment-%05d.bin", segment));
+  }
+
+  /**
+   * Maps the given segment, creating it if it does not exist yet.
+   */
+  private void open(int segment) throws IOException {
+    Path file = segmentFile(dir, segment);
+    boolean fresh = !Files.exists(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) SEGMENT_RECORDS * RECORD_BYTES);
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (fresh) {
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(4, RECORD_BYTES);
+      buffer.putLong(COUNT_OFFSET, 0);
+    }
+    else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != RECORD_BYTES)
+      throw new IOException(file + " is not a result segment");
+    this.segment = segment;
+    count = buffer.getLong(COUNT_OFFSET);
+  }
+
+  /**
+   * Appends one game result.
+   */
+  public synchronized void write(long seed, int size, int variant, int moves, long nanos, boolean win) {
+    if (count == SEGMENT_RECORDS)
+      rollOver();
+    int at = HEADER_BYTES + (int) count * RECORD_BYTES;
+    buffer.putLong(at, seed);
+    buffer.putLong(at + 8, nanos);
+    buffer.putInt(at + 16, size);
+    buffer.putInt(at + 20, moves);
+    buffer.putShort(at + 24, (short) variant);
+    buffer.put(at + 26, (byte) (win ? 1 : 0));
+    buffer.putLong(COUNT_OFFSET, ++count);
+    written++;
+  }
+
+  private void rollOver() {
+    buffer.force();
+    try {
+      open(segment + 1);
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Unable to start result segment " + (segment + 1), e);
+    }
+  }
+
+  /**
+   * Returns the number of records written through this sink.
+   */
+  public synchronized long written() {
+    return written;
+  }
+
+  /**
+   * Flushes the current segment to disk. The mapping itself is released when the sink is
+   * garbage collected.
+   */
+  public synchronized void close() {
+    buffer.force();
+  }
+
+  /**
+   * Plays a tournament that records every game into Constants.RESULTS_DIR, then
+   * aggregates the whole store with ResultReader.
+   *
+   * Usage: ResultSink [gamesPerSize [seed [size ...]]]
+   */
+  public static void main(String... args) throws IOException {
+    long games = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+    long seed = args.length > 1 ? Long.parseLong(args[1]) : 40;
+    int[] sizes = { 6, 10, Constants.DEFAULT_SIZE };
+    if (args.length > 2) {
+      sizes = new int[args.length - 2];
+      for (int i = 2; i < args.length; i++)
+        sizes[i - 2] = Integer.parseInt(args[i]);
+    }
+    try (ResultSink sink = new ResultSink()) {
+      long start = System.nanoTime();
+      Tournament tournament = new Tournament(seed)
+          .add("suggest", Strategy.SUGGEST)
+          .add("greedy", Strategy.GREEDY)
+          .recordTo(sink);
+      for (int size : sizes)
+        tournament.play(size, games);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf("%d records written in %.1f s (%.0f records/s)%n", sink.written(), seconds,
+          sink.written() / seconds);
+    }
+    ResultReader.main(Constants.RESULTS_DIR);
+  }
+}
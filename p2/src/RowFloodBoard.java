@@ -0,0 +1,211 @@
+import java.util.Random;
+
+/**
+ * A square board (Topology.SQUARE4) flooded a whole row at a time, with the operations on
+ * each row done on 64-bit words: 8 tile colors per word when comparing colors, and 64
+ * tiles per word for the flooded masks.
+ *
+ * Tile colors are packed 8 bytes to a long, row by row. A move first compares every word
+ * of colors against the new color broadcast to all 8 bytes (a zero-byte test on their
+ * xor) and packs the 8 results into 8 bits of the row's match mask. Then the flooded mask
+ * of each row is grown, sweeping down and up the rows until nothing changes: a row's seeds
+ * are its flooded tiles and the matching tiles below flooded tiles of the rows above and
+ * below, and the whole runs of matching tiles around the seeds are filled in one step by
+ * a carry-propagating addition (and the same on the bit-reversed row for the other
+ * direction).
+ *
+ * The incubating Vector API (jdk.incubator.vector) would need --add-modules at compile and
+ * run time, so the rows are processed with plain long arithmetic, which every JVM runs.
+ * Board.flood() stays the scalar engine for every topology.
+ */
+
+public class RowFloodBoard {
+  private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL, ONES = 0x0101010101010101L;
+  private static final long GATHER = 0x0102040810204080L;  // moves bit 8b of a word to bit 56 + b
+
+  private final int size, words, bytesWords;  // words: longs per row mask; bytesWords: longs per row of colors
+  private final long[] colors;   // [y * bytesWords + k]: the colors of tiles 8k..8k+7 of row y, one per byte
+  private final long[] flooded;  // [y * words + w]: the flooded tiles 64w..64w+63 of row y
+  private final long[] match;    // the same for the tiles of the selected color
+  private final long[] seeds, reversed;  // scratch rows
+  private int regionColor;
+
+  /**
+   * Loads the state of the given square board.
+   */
+  public RowFloodBoard(Board board) {
+    if (board.getTopology() != Topology.SQUARE4)
+      throw new IllegalArgumentException("rows need a square board, not " + board.getTopology());
+    size = board.getSize();
+    words = (size + 63) / 64;
+    bytesWords = (size + 7) / 8;
+    colors = new long[size * bytesWords];
+    flooded = new long[size * words];
+    match = new long[size * words];
+    seeds = new long[words];
+    reversed = new long[words];
+    for (int y = 0; y < size; y++)
+      for (int k = 0; k < bytesWords; k++) {
+        long packed = -1;  // bytes past the end of the row match no color
+        for (int b = 0; b < 8 && 8 * k + b < size; b++)
+          packed = packed & ~(0xFFL << 8 * b) | (long) board.colorAt(y * size + 8 * k + b) << 8 * b;
+        colors[y * bytesWords + k] = packed;
+      }
+    for (int i = 0; i < size * size; i++)
+      if (board.isFlooded(i))
+        flooded[i / size * words + i % size / 64] |= 1L << i % size;
+    regionColor = board.getRegionColor();
+  }
+
+  /**
+   * Recolors the flooded region with the given color id and absorbs every tile of that
+   * color connected to it.
+   */
+  public void flood(int color) {
+    regionColor = color;
+    matchRows(color);
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int y = 0; y < size; y++)
+        changed |= growRow(y);
+      for (int y = size - 2; y > 0; y--)
+        changed |= growRow(y);
+    }
+  }
+
+  /**
+   * Sets the match mask of every row to its tiles of the given color.
+   */
+  private void matchRows(int color) {
+    long broadcast = ONES * color;
+    for (int y = 0; y < size; y++) {
+      for (int w = 0; w < words; w++)
+        match[y * words + w] = 0;
+      for (int k = 0; k < bytesWords; k++) {
+        long x = colors[y * bytesWords + k] ^ broadcast;
+        long zero = ~(((x & LOW7) + LOW7) | x | LOW7);  // the top bit of every zero byte
+        long bits = ((zero >>> 7) * GATHER) >>> 56;
+        match[y * words + k / 8] |= bits << 8 * (k % 8);
+      }
+    }
+  }
+
+  /**
+   * Floods the runs of matching tiles of row y that touch the flooded tiles of rows y - 1
+   * to y + 1. Returns true iff the row changed.
+   */
+  private boolean growRow(int y) {
+    int row = y * words;
+    boolean any = false;
+    for (int w = 0; w < words; w++) {
+      long near = flooded[row + w];
+      if (y > 0)
+        near |= flooded[row - words + w];
+      if (y + 1 < size)
+        near |= flooded[row + words + w];
+      long s = flooded[row + w] | near & match[row + w];
+      seeds[w] = s;
+      any |= s != 0;
+    }
+    if (!any)
+      return false;
+    // Fill upward (toward higher x): a carry started at each seed runs through its run of
+    // allowed tiles, where allowed = flooded | match.
+    long carry = 0;
+    boolean changed = false;
+    for (int w = 0; w < words; w++) {
+      long allowed = flooded[row + w] | match[row + w], s = seeds[w];
+      long sum = allowed + s + carry;
+      carry = Long.compareUnsigned(sum, allowed) < 0 || (carry != 0 && sum == allowed) ? 1 : 0;
+      reversed[words - 1 - w] = Long.reverse(allowed);
+      seeds[w] = ((sum ^ allowed) | s) & allowed;
+    }
+    // Fill downward, the same way on the bit-reversed row.
+    carry = 0;
+    for (int v = 0; v < words; v++) {
+      int w = words - 1 - v;
+      long allowed = reversed[v], s = Long.reverse(seeds[w]);
+      long sum = allowed + s + carry;
+      carry = Long.compareUnsigned(sum, allowed) < 0 || (carry != 0 && sum == allowed) ? 1 : 0;
+      long filled = seeds[w] | Long.reverse(((sum ^ allowed) | s) & allowed);
+      changed |= filled != flooded[row + w];
+      flooded[row + w] = filled;
+    }
+    return changed;
+  }
+
+  /**
+   * Returns true iff the tile at the given index (y * size + x) is in the flooded region.
+   */
+  public boolean isFlooded(int index) {
+    return (flooded[index / size * words + index % size / 64] >>> index % size & 1) != 0;
+  }
+
+  /**
+   * Returns the color id of the tile at the given index (y * size + x).
+   */
+  public int colorAt(int index) {
+    if (isFlooded(index))
+      return regionColor;
+    int x = index % size;
+    return (int) (colors[index / size * bytesWords + x / 8] >>> 8 * (x % 8)) & 0xFF;
+  }
+
+  /**
+   * Returns the number of flooded tiles.
+   */
+  public int floodedSize() {
+    int count = 0;
+    for (long mask : flooded)
+      count += Long.bitCount(mask);
+    return count;
+  }
+
+  public boolean fullyFlooded() {
+    return floodedSize() == size * size;
+  }
+
+  /**
+   * Plays the same suggested moves with Board.flood() and with this kernel on boards of
+   * growing size, checks that both end in the same state, and reports the time per move.
+   *
+   * Usage: RowFloodBoard [games]
+   */
+  public static void main(String... args) {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+    race(Constants.DEFAULT_SIZE, 500);  // warms up the JIT
+    race(Constants.MAX_DIM, 20);
+    System.out.println("size\tmoves\tBoard.flood(us)\trows(us)\tspeedup");
+    for (int size : new int[] { Constants.DEFAULT_SIZE, Constants.MAX_DIM, 256, 512 }) {
+      long[] nanos = race(size, games);
+      System.out.printf("%d\t%d\t%.1f\t%.1f\t%.2fx%n", size, nanos[2], nanos[0] / 1e3 / nanos[2],
+          nanos[1] / 1e3 / nanos[2], (double) nanos[0] / nanos[1]);
+    }
+  }
+
+  /**
+   * Plays the given number of seeded games of the given size on both engines. Returns the
+   * nanoseconds spent in Board.flood() and in this kernel, and the number of moves.
+   */
+  private static long[] race(int size, int games) {
+    long[] nanos = new long[3];
+    for (int g = 0; g < games; g++) {
+      Board board = new Board(size, new Random(50L * 1_000_003 + g));
+      RowFloodBoard kernel = new RowFloodBoard(board);
+      while (!board.fullyFlooded()) {
+        int color = board.suggestColor();
+        long start = System.nanoTime();
+        board.flood(color);
+        long middle = System.nanoTime();
+        kernel.flood(color);
+        nanos[0] += middle - start;
+        nanos[1] += System.nanoTime() - middle;
+        nanos[2]++;
+      }
+      if (!kernel.fullyFlooded())
+        throw new IllegalStateException("the row kernel did not flood the " + size + "x" + size + " board");
+    }
+    return nanos;
+  }
+}
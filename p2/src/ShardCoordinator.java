@@ -0,0 +1,283 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a batchTest-style sweep (flood function x board size x seed range) across several
+ * worker JVMs and merges their results into one BatchResults run.
+ *
+ * The sweep is cut into shards of a few seeds each. The coordinator listens on a socket and
+ * hands shards to the ShardWorkers that connect, one shard per worker at a time. A worker
+ * that disconnects or goes silent for longer than SHARD_TIMEOUT_MILLIS has its shard put
+ * back at the head of the queue for another worker. In localhost mode the coordinator
+ * starts the workers itself and replaces those that die while shards remain, up to as many
+ * replacements as workers, and stops every worker it started, replacements included, once
+ * the sweep is over; otherwise it waits for workers started by hand, on this host or others.
+ *
+ * Unlike batchTest, every sharded game floods the board to the end and draws it from its
+ * own Random(seed), so its times are not comparable with batchTest's. The merged samples
+ * are stored under the flood function's name plus SHARDED, which BatchResults.compare()
+ * only matches against other sharded runs.
+ */
+
+public class ShardCoordinator {
+  private static final long SHARD_TIMEOUT_MILLIS = 10 * 60_000;
+  private static final long STOP_MILLIS = 5_000;
+  public static final String SHARDED = "/sharded";
+
+  private final ServerSocket server;
+  private final List<Method> floods = AllocationHarness.floodFunctions();
+  private final int[] sizes;
+  private final List<Shard> shards = new ArrayList<>();
+  private final BlockingDeque<Shard> pending = new LinkedBlockingDeque<>();
+  private final BatchResults.Run run;
+  private final long[][][] totals;  // [variant][size][games, moves, nanos]
+  private final double[][] squares;  // [variant][size] sum of squared nanos
+  private final AtomicInteger requeued = new AtomicInteger(), connected = new AtomicInteger();
+  private final List<Process> processes = new ArrayList<>();  // every local worker started; guarded by itself
+  private boolean stopping;  // set once the sweep is over, so no more workers are started
+  private CountDownLatch finished;
+
+  /**
+   * A range of seeds to play with one flood function on one board size.
+   */
+  private static class Shard {
+    final int id, variant, size;
+    final long firstSeed, endSeed;
+
+    Shard(int id, int variant, int size, long firstSeed, long endSeed) {
+      this.id = id;
+      this.variant = variant;
+      this.size = size;
+      this.firstSeed = firstSeed;
+      this.endSeed = endSeed;
+    }
+  }
+
+  /**
+   * Prepares a sweep over every flood function and the given sizes, with seeds
+   * firstSeed, firstSeed + 1, ... (seedsPerSize of them) cut into shards of seedsPerShard,
+   * and listens for workers on the given address and port (0 picks a free port).
+   */
+  public ShardCoordinator(InetAddress address, int port, long firstSeed, long seedsPerSize, long seedsPerShard,
+      int... sizes) throws IOException {
+    server = new ServerSocket();
+    server.bind(new InetSocketAddress(address, port));
+    run = BatchResults.Run.start(firstSeed);
+    totals = new long[floods.size()][sizes.length][3];
+    squares = new double[floods.size()][sizes.length];
+    for (int v = 0; v < floods.size(); v++)
+      for (int s = 0; s < sizes.length; s++)
+        for (long seed = firstSeed; seed < firstSeed + seedsPerSize; seed += seedsPerShard)
+          shards.add(new Shard(shards.size(), v, s, seed, Math.min(firstSeed + seedsPerSize, seed + seedsPerShard)));
+    pending.addAll(shards);
+    this.sizes = sizes;
+  }
+
+  /**
+   * Returns the port workers should connect to.
+   */
+  public int getPort() {
+    return server.getLocalPort();
+  }
+
+  /**
+   * Runs the sweep until every shard is done, starting the given number of local worker
+   * processes (none to wait for workers started elsewhere), and returns the merged run.
+   */
+  public BatchResults.Run run(int localWorkers, boolean chaos) throws IOException, InterruptedException {
+    finished = new CountDownLatch(shards.size());
+    Thread acceptor = new Thread(this::accept, "shard-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    AtomicInteger restarts = new AtomicInteger(localWorkers);
+    for (int w = 0; w < localWorkers; w++)
+      spawn(chaos && w == 0 ? 1 : -1, restarts);
+    System.out.println(shards.size() + " shards, waiting for workers on port " + getPort());
+    try {
+      finished.await();
+    }
+    finally {
+      server.close();
+      stopWorkers();
+    }
+    System.out.println(connected.get() + " workers connected, " + requeued.get() + " shards re-queued");
+    for (int v = 0; v < floods.size(); v++)
+      for (int s = 0; s < sizes.length; s++) {
+        long[] t = totals[v][s];
+        double mean = (double) t[2] / t[0];
+        double variance = t[0] < 2 ? 0 : Math.max(0, (squares[v][s] - t[0] * mean * mean) / (t[0] - 1));
+        run.samples.add(new BatchResults.Sample(floods.get(v).getName() + SHARDED, sizes[s], (int) t[0], mean, Math.sqrt(variance)));
+      }
+    return run;
+  }
+
+  /**
+   * Starts a local worker process, and a watcher that replaces it if it dies while shards
+   * remain, as long as restarts are left. Does nothing once the workers are being stopped.
+   */
+  private void spawn(int crashAfter, AtomicInteger restarts) throws IOException {
+    String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path"),
+        "ShardWorker", "localhost", Integer.toString(getPort())));
+    if (crashAfter >= 0)
+      command.add(Integer.toString(crashAfter));
+    Process process;
+    synchronized (processes) {
+      if (stopping)
+        return;
+      process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+          .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      processes.add(process);
+    }
+    process.onExit().thenAccept(p -> {
+      if (p.exitValue() != 0 && finished.getCount() > 0 && restarts.getAndDecrement() > 0) {
+        System.out.println("worker " + p.pid() + " died (exit " + p.exitValue() + "), starting a replacement");
+        try {
+          spawn(-1, restarts);
+        }
+        catch (IOException e) {
+          System.out.println("Unable to start a worker: " + e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Stops every local worker started, replacements included, and waits for them to exit,
+   * killing those that do not exit within STOP_MILLIS.
+   */
+  private void stopWorkers() throws InterruptedException {
+    List<Process> started;
+    synchronized (processes) {
+      stopping = true;
+      started = new ArrayList<>(processes);
+    }
+    for (Process process : started)
+      process.destroy();
+    for (Process process : started)
+      if (!process.waitFor(STOP_MILLIS, TimeUnit.MILLISECONDS))
+        process.destroyForcibly().waitFor();
+  }
+
+  private void accept() {
+    try {
+      while (true) {
+        Socket socket = server.accept();
+        Thread thread = new Thread(() -> serve(socket), "shard-worker-" + connected.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+      }
+    }
+    catch (IOException e) {
+      // The server socket was closed: the sweep is over.
+    }
+  }
+
+  /**
+   * Hands shards to one worker until none are left, re-queueing the shard in flight if the
+   * worker fails.
+   */
+  private void serve(Socket socket) {
+    Shard shard = null;
+    try (Socket s = socket) {
+      s.setTcpNoDelay(true);
+      s.setSoTimeout((int) SHARD_TIMEOUT_MILLIS);
+      BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+      PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII));
+      String hello = in.readLine();
+      if (hello == null || !hello.startsWith("HELLO"))
+        return;
+      while (finished.getCount() > 0) {
+        shard = pending.poll(100, TimeUnit.MILLISECONDS);
+        if (shard == null)
+          continue;  // the rest is in flight; wait in case a worker dies
+        out.print("SHARD " + shard.id + " " + shard.variant + " " + sizes[shard.size] + " " + shard.firstSeed + " "
+            + shard.endSeed + "\n");
+        out.flush();
+        String line = in.readLine();
+        if (line == null)
+          throw new SocketException("worker disconnected");
+        String[] w = line.split(" ");
+        if (!w[0].equals("DONE") || Integer.parseInt(w[1]) != shard.id)
+          throw new IOException("unexpected reply: " + line);
+        merge(shard, w);
+        shard = null;
+        finished.countDown();
+      }
+      out.print("BYE\n");
+      out.flush();
+    }
+    catch (IOException | RuntimeException e) {
+      if (shard != null) {
+        pending.addFirst(shard);
+        requeued.incrementAndGet();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private synchronized void merge(Shard shard, String[] w) {
+    long[] t = totals[shard.variant][shard.size];
+    for (int k = 0; k < 3; k++)
+      t[k] += Long.parseLong(w[2 + k]);
+    squares[shard.variant][shard.size] += Double.parseDouble(w[5]);
+  }
+
+  /**
+   * Runs a sweep and appends the merged run to the BatchResults store, with its variants
+   * tagged SHARDED. With a positive
+   * number of workers, everything runs on localhost; with 0, the coordinator listens on
+   * Constants.SHARD_PORT on every interface for ShardWorkers started by hand. Set the
+   * system property shard.chaos to make the first local worker crash, to see its shard
+   * re-queued.
+   *
+   * Usage: ShardCoordinator [workers [seedsPerSize [seedsPerShard [firstSeed [size ...]]]]]
+   */
+  public static void main(String... args) throws Exception {
+    int workers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    long seeds = args.length > 1 ? Long.parseLong(args[1]) : 200;
+    long perShard = args.length > 2 ? Long.parseLong(args[2]) : 20;
+    long firstSeed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+    int[] sizes = { 2, 6, 10, Constants.DEFAULT_SIZE };
+    if (args.length > 4) {
+      sizes = new int[args.length - 4];
+      for (int i = 4; i < args.length; i++)
+        sizes[i - 4] = Integer.parseInt(args[i]);
+    }
+    InetAddress address = workers > 0 ? InetAddress.getLoopbackAddress() : null;
+    ShardCoordinator coordinator = new ShardCoordinator(address, workers > 0 ? 0 : Constants.SHARD_PORT, firstSeed,
+        seeds, perShard, sizes);
+    long start = System.nanoTime();
+    BatchResults.Run run = coordinator.run(workers, Boolean.getBoolean("shard.chaos"));
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println("variant\tsize\tgames\tmean(ms)\tsd(ms)");
+    long games = 0;
+    for (BatchResults.Sample s : run.samples) {
+      games += s.games;
+      System.out.printf("%s\t%d\t%d\t%.3f\t%.3f%n", s.variant, s.size, s.games, s.mean / 1e6, s.sd / 1e6);
+    }
+    System.out.printf("%d games in %.1f s (%.0f games/s)%n", games, seconds, games / seconds);
+    new BatchResults().append(run);
+    System.out.println("batch run " + run.id + " saved to " + Constants.BATCH_RESULTS);
+  }
+}
@@ -0,0 +1,75 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A worker process for ShardCoordinator. It connects to the coordinator, then plays the
+ * shards it is handed, one at a time, until told to stop:
+ *
+ *   worker:      HELLO pid
+ *   coordinator: SHARD id variant size firstSeed endSeed
+ *   worker:      DONE id games moves sumNanos sumSquaredNanos
+ *   ...
+ *   coordinator: BYE
+ *
+ * A shard is a range of seeds played by autoplay (as in Game.autoPlay(): the board's
+ * suggestions, with the given flood function) on boards of the given size.
+ *
+ * Usage: ShardWorker host port [crashAfterShards]
+ */
+
+public class ShardWorker {
+  public static void main(String... args) throws Exception {
+    String host = args[0];
+    int port = Integer.parseInt(args[1]);
+    int crashAfter = args.length > 2 ? Integer.parseInt(args[2]) : -1;
+    List<Method> floods = AllocationHarness.floodFunctions();
+    try (Socket socket = new Socket(host, port)) {
+      socket.setTcpNoDelay(true);
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+      PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+      out.print("HELLO " + ProcessHandle.current().pid() + "\n");
+      out.flush();
+      int shards = 0;
+      for (String line = in.readLine(); line != null && line.startsWith("SHARD"); line = in.readLine()) {
+        if (shards++ == crashAfter)
+          Runtime.getRuntime().halt(3);  // simulate a crash, for testing the coordinator
+        String[] w = line.split(" ");
+        out.print("DONE " + w[1] + " " + play(floods.get(Integer.parseInt(w[2])), Integer.parseInt(w[3]),
+            Long.parseLong(w[4]), Long.parseLong(w[5])) + "\n");
+        out.flush();
+      }
+    }
+  }
+
+  /**
+   * Plays one game per seed and returns "games moves sumNanos sumSquaredNanos".
+   */
+  static String play(Method flood, int size, long firstSeed, long endSeed) throws Exception {
+    int cap = 10 * Game.stepLimit(size);
+    long games = 0, moves = 0, nanos = 0;
+    double squares = 0;
+    for (long seed = firstSeed; seed < endSeed; seed++) {
+      Board board = new Board(size, new Random(seed));
+      int played = 0;
+      long start = System.nanoTime();
+      while (!board.fullyFlooded() && played < cap) {
+        flood.invoke(board, board.suggest());
+        played++;
+      }
+      long elapsed = System.nanoTime() - start;
+      games++;
+      moves += played;
+      nanos += elapsed;
+      squares += (double) elapsed * elapsed;
+    }
+    return games + " " + moves + " " + nanos + " " + squares;
+  }
+}
@@ -0,0 +1,51 @@
+import java.util.Random;
+
+/**
+ * A Strategy picks the color of the next move for a board, as a color id of the board's
+ * palette. Strategies may use the given generator for their own randomness, so that seeded
+ * games can be replayed exactly.
+ */
+
+public interface Strategy {
+  /**
+   * Returns the color id to play next on the given board. The board must not be modified.
+   */
+  int choose(Board board, Random gen);
+
+  /**
+   * The board's own suggestion, which counts the outside tiles along the perimeter of
+   * the flooded region. Board.suggest() adds to perimeter counts kept on the board since
+   * earlier moves, so, unlike the other strategies, this one updates those counts and its
+   * move depends on the game's history, not just the position.
+   */
+  Strategy SUGGEST = (board, gen) -> board.suggestColor();
+
+  /**
+   * A color picked at random among those different from the flooded region's color.
+   */
+  Strategy RANDOM = (board, gen) -> {
+    int color;
+    do
+      color = board.getPalette().pickOne(gen);
+    while (color == board.getRegionColor());
+    return color;
+  };
+
+  /**
+   * The color after the flooded region's color, in id order.
+   */
+  Strategy CYCLE = (board, gen) -> (board.getRegionColor() + 1) % board.getPalette().size();
+
+  /**
+   * The color that grows the flooded region the most, measured for every color at once
+   * with Board.gains(). Ties go to the lowest color id.
+   */
+  Strategy GREEDY = (board, gen) -> {
+    int[] gain = board.gains();
+    int best = 0;
+    for (int color = 1; color < gain.length; color++)
+      if (gain[color] > gain[best])
+        best = color;
+    return best;
+  };
+}
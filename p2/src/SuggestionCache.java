@@ -0,0 +1,104 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe cache of the moves a strategy suggests, keyed by
+ * Board.fingerprint(). The least recently used position is evicted once the cache is full.
+ *
+ * A position is computed at most once even when several games ask for it at the same
+ * time: the first caller computes it, outside the lock, and the others wait for its result.
+ * Only strategies whose move is a function of the position alone should be cached; the
+ * strategy is given a generator seeded with the fingerprint. Strategy.SUGGEST is not one
+ * of them, since Board.suggest() reads and updates perimeter counts that carry over from
+ * earlier moves, and it is rejected.
+ */
+
+public class SuggestionCache {
+  private final Strategy strategy;
+  private final Map<Long, CompletableFuture<Integer>> entries;
+  private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), evictions = new AtomicLong();
+
+  /**
+   * Creates a cache holding up to the given number of positions for the given strategy.
+   */
+  public SuggestionCache(int capacity, Strategy strategy) {
+    if (strategy == Strategy.SUGGEST)
+      throw new IllegalArgumentException("Board.suggest() depends on the moves played, not just the position");
+    this.strategy = strategy;
+    entries = new LinkedHashMap<Long, CompletableFuture<Integer>>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<Integer>> eldest) {
+        if (size() <= capacity)
+          return false;
+        evictions.incrementAndGet();
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Returns the strategy's move (a color id) for the given board, computing it only if this
+   * position is not cached.
+   */
+  public int suggest(Board board) {
+    long key = board.fingerprint();
+    CompletableFuture<Integer> future, mine = null;
+    synchronized (entries) {
+      future = entries.get(key);
+      if (future == null) {
+        mine = new CompletableFuture<>();
+        entries.put(key, mine);
+      }
+    }
+    if (mine == null) {
+      hits.incrementAndGet();
+      return future.join();
+    }
+    misses.incrementAndGet();
+    try {
+      int color = strategy.choose(board, new Random(key));
+      mine.complete(color);
+      return color;
+    }
+    catch (RuntimeException e) {
+      // Do not cache failures; let waiting callers see the exception.
+      synchronized (entries) {
+        entries.remove(key, mine);
+      }
+      mine.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the number of cached positions.
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long hits() {
+    return hits.get();
+  }
+
+  public long misses() {
+    return misses.get();
+  }
+
+  public long evictions() {
+    return evictions.get();
+  }
+
+  /**
+   * Returns the hit/miss statistics as a string.
+   */
+  public String toString() {
+    long h = hits(), m = misses();
+    return String.format("SuggestionCache[%d positions, %d hits, %d misses (%.1f%% hit rate), %d evictions]",
+        size(), h, m, h + m == 0 ? 0.0 : 100.0 * h / (h + m), evictions());
+  }
+}
@@ -1,5 +1,14 @@
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Test;
 
 /**
@@ -14,6 +23,423 @@ public class Testing {
     assertTrue(new Coord(3, 4).onBoard(5));
   }
 
+  @Test
+  public void testChunkedBoardFloodsAcrossChunks() {
+    ChunkedBoard board = new ChunkedBoard(new Board(ChunkedBoard.CHUNK * 2 + 3));
+    for (int i = 0; !board.fullyFlooded(); i++)
+      board.flood(WaterColor.values()[i % WaterColor.values().length]);
+    Coord corner = new Coord(board.getSize() - 1, board.getSize() - 1);
+    assertTrue(board.isFlooded(corner));
+    assertEquals(board.getColor(Coord.ORIGIN), board.getColor(corner));
+  }
+
+  @Test
+  public void testChunkedBoardTakesLargePalettes() {
+    Board board = new Board(ChunkedBoard.CHUNK + 5, new Palette(9), new Random(26));
+    ChunkedBoard chunked = new ChunkedBoard(board);
+    for (int i = 0; !board.fullyFlooded(); i++) {
+      board.flood(i % 9);
+      chunked.flood(i % 9);
+    }
+    assertTrue(chunked.fullyFlooded());
+    assertEquals(board.getRegionColor(), chunked.colorAt(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testChunkedBoardRejectsOtherTopologies() {
+    new ChunkedBoard(new Board(8, Palette.DEFAULT, Topology.HEX, new Random(26)));
+  }
+
+  @Test
+  public void testLargePaletteFloodsWithBitmasks() {
+    Palette palette = new Palette(12);
+    Board board = new Board(8, palette, new Random(12));
+    assertEquals(0, board.remainingColors() & ~palette.all());
+    int moves = 0;
+    while (!board.fullyFlooded() && moves++ < 1000)
+      board.flood(Integer.numberOfTrailingZeros(board.adjacentColors()));
+    assertTrue(board.fullyFlooded());
+    assertEquals(0, board.remainingColors());
+    assertEquals(0, board.adjacentColors());
+  }
+
+  @Test
+  public void testStrategiesPlayLargePalettes() {
+    for (Strategy strategy : new Strategy[] { Strategy.SUGGEST, Strategy.RANDOM, Strategy.CYCLE, Strategy.GREEDY }) {
+      Board board = new Board(10, new Palette(12), new Random(29));
+      Random gen = new Random(29);
+      for (int moves = 0; !board.fullyFlooded() && moves < 1000; moves++)
+        board.flood(strategy.choose(board, gen));
+      assertTrue(board.fullyFlooded());
+    }
+  }
+
+  @Test
+  public void testTopologyAdjacency() {
+    Adjacency square = Topology.SQUARE4.adjacency(3);
+    assertEquals(2, square.degree(0));
+    assertEquals(4, square.degree(4));
+    assertEquals(8, Topology.SQUARE8.adjacency(3).degree(4));
+    assertEquals(6, Topology.HEX.adjacency(4).degree(5));
+    Adjacency torus = Topology.TORUS.adjacency(3);
+    assertEquals(4, torus.degree(0));
+    assertEquals(6, torus.neighbor(0, 0));  // north of (0, 0) wraps to (0, 2)
+    assertEquals(2, torus.neighbor(0, 2));  // west of (0, 0) wraps to (2, 0)
+    assertSame(torus, Topology.TORUS.adjacency(3));
+  }
+
+  @Test
+  public void testFloodOnEveryTopology() {
+    for (Topology topology : Topology.values()) {
+      Board board = new Board(9, Palette.DEFAULT, topology, new Random(9));
+      int moves = 0;
+      while (!board.fullyFlooded() && moves++ < 100)
+        board.flood(Integer.numberOfTrailingZeros(board.adjacentColors()));
+      assertTrue(topology.toString(), board.fullyFlooded());
+    }
+  }
+
+  @Test
+  public void testFingerprintTracksPosition() {
+    Board board = new Board(10, new Random(3));
+    Board copy = new Board(board);
+    assertEquals(board.fingerprint(), copy.fingerprint());
+    int color = Integer.numberOfTrailingZeros(board.adjacentColors());
+    board.flood(color);
+    assertNotEquals(board.fingerprint(), copy.fingerprint());
+    copy.flood(color);
+    assertEquals(board.fingerprint(), copy.fingerprint());
+    long incremental = board.fingerprint();
+    board.flood1(WaterColor.values()[color]);  // same color: nothing left to absorb
+    assertEquals(incremental, board.fingerprint());
+  }
+
+  @Test
+  public void testSuggestionCacheHitsOnSamePosition() {
+    SuggestionCache cache = new SuggestionCache(1, Strategy.GREEDY);
+    Board board = new Board(6, new Random(6));
+    int first = cache.suggest(board);
+    assertEquals(first, cache.suggest(new Board(board)));
+    assertEquals(1, cache.hits());
+    cache.suggest(new Board(7, new Random(7)));
+    assertEquals(1, cache.evictions());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSuggestionCacheRejectsHistoryDependentStrategy() {
+    new SuggestionCache(1, Strategy.SUGGEST);
+  }
+
+  @Test
+  public void testTileViewsFollowFloods() {
+    Board board = new Board(5, new Random(35));
+    Tile corner = board.get(Coord.ORIGIN);
+    assertSame(corner, board.get(new Coord(0, 0)));
+    assertNull(board.get(new Coord(5, 0)));
+    int color = Integer.numberOfTrailingZeros(board.adjacentColors());
+    board.flood(color);
+    assertEquals(color, corner.getColorId());
+    assertEquals(color, board.getRegionColor());
+  }
+
+  @Test
+  public void testGainsMatchFloodedCopies() {
+    Board board = new Board(8, new Random(36));
+    int[] gain = board.gains();
+    for (int color = 0; color < gain.length; color++) {
+      Board copy = new Board(board);
+      copy.flood(color);
+      assertEquals(copy.floodedSize() - board.floodedSize(), gain[color]);
+    }
+  }
+
+  @Test
+  public void testListenersSeeEachMove() {
+    Board board = new Board(8, new Random(37));
+    List<BoardChange> changes = new ArrayList<>();
+    board.addListener((b, change) -> changes.add(change));
+    int before = board.floodedSize(), color = Integer.numberOfTrailingZeros(board.adjacentColors());
+    board.flood(color);
+    assertEquals(1, changes.size());
+    BoardChange change = changes.get(0);
+    assertEquals(color, change.getNewColor());
+    assertEquals(board.floodedSize() - before, change.absorbedCount());
+    for (int k = 0; k < change.absorbedCount(); k++)
+      assertTrue(board.isFlooded(change.absorbedCoord(k)));
+  }
+
+  @Test
+  public void testBitLanesMatchSingleBoards() {
+    Board[] boards = new Board[BitLaneBoards.LANES];
+    for (int g = 0; g < boards.length; g++)
+      boards[g] = new Board(6, new Random(g));
+    BitLaneBoards lanes = new BitLaneBoards(boards);
+    lanes.playAll(100);
+    assertEquals(-1L, lanes.finished());
+    for (int g = 0; g < boards.length; g++) {
+      int moves = 0;
+      while (!boards[g].fullyFlooded()) {
+        boards[g].flood(BitLaneBoards.frontierMove(boards[g]));
+        moves++;
+      }
+      assertEquals(moves, lanes.moves(g));
+    }
+  }
+
+  @Test
+  public void testLookaheadIgnoresPoolSize() {
+    ForkJoinPool one = new ForkJoinPool(1), four = new ForkJoinPool(4);
+    try {
+      for (int seed = 0; seed < 6; seed++) {
+        Board board = new Board(7, new Random(38 + seed));
+        int depth = 1 + seed % 3;
+        int chosen = new LookaheadSearch(depth, one).bestColor(board);
+        assertEquals(chosen, new LookaheadSearch(depth, four).bestColor(board));
+        assertEquals(sequentialLookahead(board, depth), chosen);
+      }
+    }
+    finally {
+      one.shutdown();
+      four.shutdown();
+    }
+  }
+
+  /**
+   * The choice of LookaheadSearch, by plain recursion over flooded copies.
+   */
+  private static int sequentialLookahead(Board board, int depth) {
+    int best = 0;
+    long bestScore = Long.MIN_VALUE;
+    for (int color = 0; color < board.getPalette().size(); color++) {
+      long score = lookaheadScore(board, color, depth);
+      if (score > bestScore) {
+        best = color;
+        bestScore = score;
+      }
+    }
+    return best;
+  }
+
+  private static long lookaheadScore(Board board, int color, int movesLeft) {
+    int n = board.getSize() * board.getSize();
+    Board copy = new Board(board);
+    copy.flood(color);
+    if (copy.floodedSize() == board.floodedSize())
+      return -1;
+    if (copy.floodedSize() == n)
+      return n + movesLeft - 1;
+    long best = copy.floodedSize();
+    if (movesLeft > 1)
+      for (int next = 0; next < board.getPalette().size(); next++)
+        best = Math.max(best, lookaheadScore(copy, next, movesLeft - 1));
+    return best;
+  }
+
+  @Test
+  public void testFloodEnginesMatchReference() {
+    Map<String, FloodDifferential.Failure> failures = FloodDifferential.run(500, 43);
+    assertNull(String.valueOf(failures.get("flood")), failures.get("flood"));
+    assertNull(String.valueOf(failures.get("ChunkedBoard")), failures.get("ChunkedBoard"));
+    assertNull(String.valueOf(failures.get("RowFloodBoard")), failures.get("RowFloodBoard"));
+  }
+
+  @Test
+  public void testBatchResultsRejectDuplicateRunIds() throws IOException {
+    Path file = Files.createTempFile("batch-results", ".tsv");
+    Files.delete(file);
+    try {
+      BatchResults results = new BatchResults(file);
+      BatchResults.Run run = BatchResults.Run.start(39);
+      run.samples.add(BatchResults.Sample.of("flood", 4, List.of(1000L, 1200L)));
+      results.append(run);
+      try {
+        results.append(run);
+        fail("a second run with id " + run.id + " was stored");
+      }
+      catch (IllegalArgumentException e) {
+        // expected
+      }
+      assertEquals(1, results.load().size());
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testRemainingCountsTrackFloods() {
+    Board board = new Board(6, new Random(44));
+    while (!board.fullyFlooded()) {
+      board.flood(Integer.numberOfTrailingZeros(board.adjacentColors()));
+      int outside = 0;
+      for (int color = 0; color < board.getPalette().size(); color++)
+        outside += board.remaining(color);
+      assertEquals(36 - board.floodedSize(), outside);
+    }
+    assertEquals(0, board.remainingColorCount());
+  }
+
+  @Test
+  public void testForcedLossDetectedEarly() {
+    int[] colors = {
+        0, 1, 2,
+        1, 2, 3,
+        2, 3, 4 };
+    // Four colors are left, so three steps cannot be enough.
+    assertTrue(new Game(new Board(3, Palette.DEFAULT, Topology.SQUARE4, colors), 3).isLost());
+    Game game = new Game(new Board(3, Palette.DEFAULT, Topology.SQUARE4, colors), 4);
+    assertFalse(game.isLost());
+    game.select(WaterColor.CYAN);  // absorbs nothing: four colors still left, three steps
+    assertTrue(game.isLost());
+  }
+
+  @Test
+  public void testForcedWinDetectedEarly() {
+    int[] colors = {
+        0, 1, 1,
+        2, 1, 1,
+        2, 2, 1 };
+    Game game = new Game(new Board(3, Palette.DEFAULT, Topology.SQUARE4, colors), 2);
+    assertFalse(game.winsNextMove());
+    game.select(WaterColor.CYAN);
+    assertTrue(game.winsNextMove());
+    assertFalse(game.isLost());
+    game.select(WaterColor.RED);
+    assertTrue(game.getBoard().fullyFlooded());
+    assertFalse(game.winsNextMove());
+  }
+
+  @Test
+  public void testCoordMapPutGetRemove() {
+    CoordMap<Integer> map = new CoordMap<>();
+    for (int i = 0; i < 100; i++)
+      map.put(new Coord(i % 10, i / 10), i);
+    assertEquals(100, map.size());
+    assertEquals(Integer.valueOf(57), map.get(new Coord(7, 5)));
+    for (int i = 0; i < 100; i += 2)
+      assertEquals(Integer.valueOf(i), map.remove(new Coord(i % 10, i / 10)));
+    assertEquals(50, map.size());
+    assertNull(map.get(new Coord(6, 5)));
+    assertEquals(Integer.valueOf(99), map.get(new Coord(9, 9)));
+  }
+
+  @Test
+  public void testVersusRegionsStaySeparate() {
+    // The whole board is blue, so player 0 takes everything but player 1's corner.
+    int[] colors = new int[9];
+    VersusBoard board = new VersusBoard(new Board(3, Palette.DEFAULT, Topology.SQUARE4, colors));
+    assertEquals(8, board.regionSize(0));
+    assertEquals(1, board.regionSize(1));
+    assertEquals(1, board.owner(8));
+    assertTrue(board.isOver());
+    assertFalse(board.isLegal(1, 0));
+  }
+
+  @Test
+  public void testVersusFrontiersCompete() {
+    // Player 0 starts on the blue corner, player 1 on the red one; the yellow diagonal
+    // touches both regions, and whoever picks yellow first takes all of it.
+    int[] colors = {
+        0, 0, 4,
+        0, 4, 1,
+        4, 1, 1 };
+    VersusBoard board = new VersusBoard(new Board(3, Palette.DEFAULT, Topology.SQUARE4, colors));
+    assertEquals(3, board.regionSize(0));
+    assertEquals(3, board.regionSize(1));
+    assertEquals(3, board.gain(1, 4));
+    assertEquals(3, board.flood(0, 4));
+    assertTrue(board.isOver());
+    assertEquals(0, board.owner(4));
+    assertEquals(0, board.gain(1, 4));
+    assertFalse(board.isLegal(1, 4));
+    // With nothing left to gain, greedy gives up its own color instead of repeating it.
+    assertEquals(0, VersusBoard.GREEDY.choose(board, 1, new Random(46)));
+  }
+
+  @Test
+  public void testDistancesFollowFloods() {
+    int[] colors = {
+        0, 1, 1,
+        2, 2, 1,
+        0, 0, 0 };
+    Board board = new Board(3, Palette.DEFAULT, Topology.SQUARE4, colors);
+    assertEquals(0, board.distance(new Coord(0, 0)));
+    assertEquals(1, board.distance(new Coord(2, 1)));
+    assertEquals(1, board.distance(new Coord(1, 1)));
+    assertEquals(2, board.distance(new Coord(2, 2)));
+    assertEquals(2, board.farthestDistance());
+    board.flood(2);
+    assertEquals(0, board.distance(new Coord(1, 1)));
+    assertEquals(1, board.distance(new Coord(2, 2)));
+    assertEquals(1, board.farthestDistance());
+  }
+
+  @Test
+  public void testCopiesKeepUpdatingDistances() {
+    int[] colors = {
+        0, 1, 1,
+        2, 2, 1,
+        0, 0, 0 };
+    Board board = new Board(3, Palette.DEFAULT, Topology.SQUARE4, colors);
+    assertEquals(2, board.farthestDistance());
+    Board copy = new Board(board);
+    copy.flood(2);
+    assertEquals(1, copy.distance(new Coord(2, 2)));
+    assertEquals(1, copy.farthestDistance());
+    assertEquals(2, board.distance(new Coord(2, 2)));
+  }
+
+  @Test
+  public void testLatencyHistogramRollsAndBuckets() {
+    LatencyMonitor.Rolling window = new LatencyMonitor.Rolling();
+    for (int i = 1; i <= 2 * LatencyMonitor.WINDOW; i++)
+      window.add(i * 1000L);
+    assertEquals(LatencyMonitor.WINDOW, window.size());
+    // Only the last WINDOW samples (1.001 to 2 ms) count, each to within 1/8.
+    long median = window.percentile(0.5);
+    assertTrue(median <= 1_500_000 && median > 1_500_000 * 7 / 8);
+    for (long v = 1; v < 1L << 40; v = v * 9 / 8 + 1) {
+      int b = LatencyMonitor.bucket(v);
+      assertTrue(LatencyMonitor.lowest(b) <= v && v < LatencyMonitor.lowest(b + 1));
+    }
+  }
+
+  @Test
+  public void testPuzzlePipelineTopsUpBuckets() throws InterruptedException, IOException {
+    Corpus corpus = new Corpus(Files.createTempDirectory("corpus"));
+    int[] first = new PuzzlePipeline(corpus, 6, 5, 7, 3, 0, 5_000).run();
+    int[] second = new PuzzlePipeline(corpus, 6, 5, 7, 5, 0, 5_000).run();
+    for (int b = 0; b < first.length; b++) {
+      List<Corpus.Entry> bucket = corpus.load(6, 5 + b);
+      assertEquals(first[b] + second[b], bucket.size());
+      assertTrue(bucket.size() <= 5);
+      assertEquals(bucket.size(), bucket.stream().mapToLong(e -> e.seed).distinct().count());
+    }
+  }
+
+  @Test
+  public void testTournamentUsesEachBoardsStepLimit() {
+    // The limit of a board is at least its greedy rollout, so greedy wins every game.
+    Tournament.Stats greedy = new Tournament(31).add("greedy", Strategy.GREEDY).play(10, 200)[0];
+    assertEquals(greedy.games, greedy.wins);
+  }
+
+  @Test
+  public void testLatencyCancelDropsQueuedInputs() {
+    LatencyMonitor monitor = new LatencyMonitor();
+    for (int click = 0; click < 3; click++)
+      monitor.input(5);
+    monitor.modelUpdated();
+    monitor.cancel(2);  // the game ended with two clicks still queued
+    monitor.painted();
+    monitor.input(7);
+    monitor.modelUpdated();
+    monitor.painted();
+    String report = monitor.report();
+    assertTrue(report, report.contains("5\tmodel\t1\t") && report.contains("5\tpaint\t1\t"));
+    assertTrue(report, report.contains("7\tmodel\t1\t") && report.contains("7\tpaint\t1\t"));
+  }
+
 // unsure how to use asserts to test flood, so I put test for it in the main of my Board class.
  
 }
\ No newline at end of file
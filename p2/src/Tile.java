@@ -1,11 +1,11 @@
 /**
  * Tile is a logical representation of one tile on the game board. A tile
- * knows its location and its color.
+ * knows its location and its color, kept as a Palette color id.
  */
 
 public class Tile {
   private Coord coord;
-  private WaterColor color;
+  private int color;
   
   /**
    * Constructs a tile at the origin with a randomly selected color.
@@ -25,6 +25,13 @@ public class Tile {
    * Constructs a tile at the given coordinate and with the given color.
    */
   public Tile(Coord coord, WaterColor color) {
+    this(coord, color.ordinal());
+  }
+
+  /**
+   * Constructs a tile at the given coordinate and with the given color id.
+   */
+  public Tile(Coord coord, int color) {
     this.coord = coord;
     this.color = color;
   }
@@ -37,9 +44,17 @@ public class Tile {
   }
   
   /**
-   * Returns the color associated with this tile.
+   * Returns the color associated with this tile. Only defined for tiles colored from
+   * the default palette.
    */
   public WaterColor getColor() {
+    return WaterColor.of(getColorId());
+  }
+  
+  /**
+   * Returns the color id associated with this tile.
+   */
+  public int getColorId() {
     return color;
   }
   
@@ -47,6 +62,13 @@ public class Tile {
    * Changes the color of this tile to the given color.
    */
   public void setColor(WaterColor color) {
+    this.color = color.ordinal();
+  }
+  
+  /**
+   * Changes the color of this tile to the given color id.
+   */
+  public void setColor(int color) {
     this.color = color;
   }
   
@@ -57,7 +79,7 @@ public class Tile {
   public boolean equals(Object obj) {
     if (obj instanceof Tile) {
       Tile that = (Tile) obj;
-      return this.coord.equals(that.coord) && this.color == that.color;
+      return this.coord.equals(that.coord) && getColorId() == that.getColorId();
     }
     return false;
   }
@@ -66,7 +88,7 @@ public class Tile {
    * Returns a string representation of this tile. 
    */
   public String toString() {
-    return "Tile[" + getCoord() + ", " + getColor() + "]";
+    return "Tile[" + getCoord() + ", " + Palette.name(getColorId()) + "]";
   }
   
   /**
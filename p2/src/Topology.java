@@ -0,0 +1,91 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ways tiles of a board can touch. Each topology builds its Adjacency table once per
+ * board size; floods and suggestions then look neighbors up in the table instead of
+ * computing and bounds-checking them on every move.
+ */
+
+public enum Topology {
+  /**
+   * The classic square grid, where tiles touch their north, south, west and east neighbors.
+   */
+  SQUARE4(false, new int[] { 0, -1, 0, 1, -1, 0, 1, 0 }, null),
+
+  /**
+   * A square grid where tiles also touch their diagonal neighbors.
+   */
+  SQUARE8(false, new int[] { 0, -1, 0, 1, -1, 0, 1, 0, -1, -1, 1, -1, -1, 1, 1, 1 }, null),
+
+  /**
+   * A hexagonal grid in "odd-r" layout: odd rows are shifted half a tile to the right, so
+   * the diagonal neighbors of a tile depend on the parity of its row.
+   */
+  HEX(false, new int[] { 0, -1, 0, 1, -1, 0, 1, 0, -1, -1, -1, 1 },
+             new int[] { 0, -1, 0, 1, -1, 0, 1, 0, 1, -1, 1, 1 }),
+
+  /**
+   * A square grid whose opposite edges are glued together, so every tile has four
+   * neighbors.
+   */
+  TORUS(true, new int[] { 0, -1, 0, 1, -1, 0, 1, 0 }, null);
+
+  private final boolean wraps;
+  private final int[] evenDeltas, oddDeltas;  // (dx, dy) pairs for even and odd rows
+  private final Map<Integer, Adjacency> tables = new ConcurrentHashMap<>();
+
+  private Topology(boolean wraps, int[] evenDeltas, int[] oddDeltas) {
+    this.wraps = wraps;
+    this.evenDeltas = evenDeltas;
+    this.oddDeltas = oddDeltas == null ? evenDeltas : oddDeltas;
+  }
+
+  /**
+   * Returns the adjacency table for boards of the given size, building it on first use.
+   */
+  public Adjacency adjacency(int size) {
+    return tables.computeIfAbsent(size, this::build);
+  }
+
+  /**
+   * Builds the adjacency table for boards of the given size. Neighbors are listed in the
+   * order of the deltas (for SQUARE4: north, south, west, east, as in Coord.neighbors),
+   * without duplicates or self-loops, which only arise when small tori wrap onto themselves.
+   */
+  private Adjacency build(int size) {
+    int n = size * size;
+    int[] start = new int[n + 1];
+    int[] target = new int[n * (evenDeltas.length / 2)];
+    int e = 0;
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++) {
+        int i = y * size + x;
+        start[i] = e;
+        int[] deltas = (y & 1) == 0 ? evenDeltas : oddDeltas;
+        for (int d = 0; d < deltas.length; d += 2) {
+          int nx = x + deltas[d], ny = y + deltas[d + 1];
+          if (wraps) {
+            nx = Math.floorMod(nx, size);
+            ny = Math.floorMod(ny, size);
+          }
+          else if (nx < 0 || ny < 0 || nx >= size || ny >= size)
+            continue;
+          int j = ny * size + nx;
+          if (j == i || contains(target, start[i], e, j))
+            continue;
+          target[e++] = j;
+        }
+      }
+    start[n] = e;
+    return new Adjacency(size, start, Arrays.copyOf(target, e));
+  }
+
+  private static boolean contains(int[] a, int from, int to, int value) {
+    for (int k = from; k < to; k++)
+      if (a[k] == value)
+        return true;
+    return false;
+  }
+}
@@ -0,0 +1,189 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+/**
+ * Plays several move strategies against each other on identical seeded boards, using all
+ * cores, and reports per board size and strategy the win rate (winning means flooding the
+ * board within its step limit, Game.stepLimit(Board), as in a real game), the mean number
+ * of moves and the mean number of moves over the limit, with 95% confidence intervals.
+ *
+ * Games that are still not flooded after MOVE_CAP_FACTOR times the fixed limit of their
+ * size, Game.stepLimit(int), are stopped and counted as unfinished losses. If a ResultSink is given, every game is also recorded
+ * there, with the strategy's registration index as its variant.
+ */
+
+public class Tournament {
+  private static final int MOVE_CAP_FACTOR = 10;
+  private static final double Z95 = 1.96;
+
+  private final Map<String, Strategy> strategies = new LinkedHashMap<>();
+  private final long seed;
+  private ResultSink sink;
+
+  /**
+   * Creates a tournament whose boards are derived from the given seed.
+   */
+  public Tournament(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Registers a strategy under the given name.
+   */
+  public Tournament add(String name, Strategy strategy) {
+    strategies.put(name, strategy);
+    return this;
+  }
+
+  /**
+   * Records every game played from now on into the given sink.
+   */
+  public Tournament recordTo(ResultSink sink) {
+    this.sink = sink;
+    return this;
+  }
+
+  /**
+   * Running totals for one strategy on one board size.
+   */
+  static class Stats {
+    long games, wins, unfinished;
+    double moves, movesSquared, overLimit, limits;
+
+    void add(int moves, int limit, boolean flooded) {
+      games++;
+      limits += limit;
+      if (flooded && moves <= limit)
+        wins++;
+      if (!flooded)
+        unfinished++;
+      this.moves += moves;
+      movesSquared += (double) moves * moves;
+      overLimit += Math.max(0, moves - limit);
+    }
+
+    void addAll(Stats that) {
+      games += that.games;
+      wins += that.wins;
+      unfinished += that.unfinished;
+      moves += that.moves;
+      movesSquared += that.movesSquared;
+      overLimit += that.overLimit;
+      limits += that.limits;
+    }
+
+    double meanLimit() {
+      return limits / games;
+    }
+
+    double meanMoves() {
+      return moves / games;
+    }
+
+    /**
+     * Returns the half-width of the 95% confidence interval of the mean number of moves.
+     */
+    double movesMargin() {
+      if (games < 2)
+        return Double.NaN;
+      double mean = meanMoves();
+      double variance = (movesSquared - games * mean * mean) / (games - 1);
+      return Z95 * Math.sqrt(Math.max(0, variance) / games);
+    }
+
+    /**
+     * Returns the 95% Wilson score interval of the win rate as {low, high}.
+     */
+    double[] winInterval() {
+      double n = games, p = wins / n, z2 = Z95 * Z95;
+      double center = (p + z2 / (2 * n)) / (1 + z2 / n);
+      double margin = Z95 * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n)) / (1 + z2 / n);
+      return new double[] { center - margin, center + margin };
+    }
+  }
+
+  /**
+   * Plays the given number of games on boards of the given size with every registered
+   * strategy, and returns the totals in registration order.
+   */
+  public Stats[] play(int size, long games) {
+    Strategy[] players = strategies.values().toArray(new Strategy[0]);
+    int cap = MOVE_CAP_FACTOR * Game.stepLimit(size);
+    return LongStream.range(0, games).parallel().collect(
+        () -> newStats(players.length),
+        (stats, game) -> {
+          long gameSeed = seed ^ ((long) size << 40) ^ (game * 0x9E3779B97F4A7C15L);
+          Board board = new Board(size, new Random(gameSeed));
+          int limit = Game.stepLimit(board);
+          for (int s = 0; s < players.length; s++) {
+            Board copy = new Board(board);
+            Random gen = new Random(gameSeed + s);
+            int moves = 0;
+            long start = System.nanoTime();
+            while (!copy.fullyFlooded() && moves < cap) {
+              copy.flood(players[s].choose(copy, gen));
+              moves++;
+            }
+            stats[s].add(moves, limit, copy.fullyFlooded());
+            if (sink != null)
+              sink.write(gameSeed, size, s, moves, System.nanoTime() - start, copy.fullyFlooded() && moves <= limit);
+          }
+        },
+        (a, b) -> {
+          for (int s = 0; s < a.length; s++)
+            a[s].addAll(b[s]);
+        });
+  }
+
+  private static Stats[] newStats(int n) {
+    Stats[] stats = new Stats[n];
+    for (int i = 0; i < n; i++)
+      stats[i] = new Stats();
+    return stats;
+  }
+
+  /**
+   * Plays the tournament on each of the given sizes and prints one row per size and
+   * strategy.
+   */
+  public void run(long games, int... sizes) {
+    System.out.println("size\tmean limit\tstrategy\tgames\twin%\twin% 95% CI\tmoves\t+/-\tover limit\tunfinished");
+    String[] names = strategies.keySet().toArray(new String[0]);
+    long start = System.nanoTime();
+    for (int size : sizes) {
+      Stats[] stats = play(size, games);
+      for (int s = 0; s < stats.length; s++) {
+        double[] ci = stats[s].winInterval();
+        System.out.printf("%d\t%.2f\t%s\t%d\t%.2f\t[%.2f, %.2f]\t%.2f\t%.2f\t%.3f\t%d%n", size,
+            stats[s].meanLimit(), names[s], stats[s].games, 100.0 * stats[s].wins / stats[s].games,
+            100 * ci[0], 100 * ci[1], stats[s].meanMoves(), stats[s].movesMargin(),
+            stats[s].overLimit / stats[s].games, stats[s].unfinished);
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long total = games * sizes.length * strategies.size();
+    System.out.printf("%d games in %.1f s (%.0f games/s)%n", total, seconds, total / seconds);
+  }
+
+  /**
+   * Usage: Tournament [gamesPerSize [seed [size ...]]]
+   */
+  public static void main(String... args) {
+    long games = args.length > 0 ? Long.parseLong(args[0]) : 10_000;
+    long seed = args.length > 1 ? Long.parseLong(args[1]) : 2017;
+    int[] sizes = { 2, 6, 10, Constants.DEFAULT_SIZE };
+    if (args.length > 2) {
+      sizes = new int[args.length - 2];
+      for (int i = 2; i < args.length; i++)
+        sizes[i - 2] = Integer.parseInt(args[i]);
+    }
+    new Tournament(seed)
+        .add("suggest", Strategy.SUGGEST)
+        .add("greedy", Strategy.GREEDY)
+        .add("cycle", Strategy.CYCLE)
+        .add("random", Strategy.RANDOM)
+        .run(games, sizes);
+  }
+}
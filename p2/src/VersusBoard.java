@@ -0,0 +1,347 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A board on which several players flood at once, each from their own starting tile, and
+ * compete for territory. Every player owns a region with its own color; a move recolors
+ * the mover's region and absorbs the unowned tiles of that color that touch it.
+ *
+ * Contention rules: a tile belongs to at most one region and never changes hands, so
+ * regions that touch stay separate; a player may not pick a color that another region has,
+ * since the two regions would look like one; and the game ends when every tile is owned.
+ *
+ * Each region keeps its frontier, the unowned tiles that touch it, bucketed by color. A
+ * move only visits the bucket of the chosen color and the tiles it absorbs (and their
+ * neighbors), so its cost is proportional to the mover's own frontier, not to the board.
+ * Tiles taken by another region are dropped from a bucket when it is next visited.
+ */
+
+public class VersusBoard {
+  public static final int UNOWNED = -1;
+
+  private final int size, players, colorCount;
+  private final Adjacency adj;
+  private final byte[] colors;        // the color of each unowned tile
+  private final int[] owner;          // the player owning each tile, or UNOWNED
+  private final int[] regionColor, regionSize;
+  private final int[][][] frontier;   // [player][color]: unowned tiles touching the region
+  private final int[][] frontierSize; // [player][color]: used length of each bucket
+  private final boolean[][] onFrontier;  // [player][tile]: whether the tile is in a bucket
+  private final int[] stack;
+  private int owned;
+  private int[] mark;                 // scratch for gain()
+  private int epoch;
+
+  /**
+   * Starts a two-player game on the colors of the given board, with player 0 in the upper
+   * left corner and player 1 in the opposite corner.
+   */
+  public VersusBoard(Board board) {
+    this(board, 0, board.getSize() * board.getSize() - 1);
+  }
+
+  /**
+   * Starts a game on the colors of the given board with one player per given starting
+   * tile index (y * size + x), in order.
+   */
+  public VersusBoard(Board board, int... starts) {
+    size = board.getSize();
+    players = starts.length;
+    colorCount = board.getPalette().size();
+    adj = board.getTopology().adjacency(size);
+    int n = size * size;
+    colors = new byte[n];
+    owner = new int[n];
+    Arrays.fill(owner, UNOWNED);
+    for (int i = 0; i < n; i++)
+      colors[i] = (byte) board.colorAt(i);
+    regionColor = new int[players];
+    regionSize = new int[players];
+    frontier = new int[players][colorCount][];
+    frontierSize = new int[players][colorCount];
+    onFrontier = new boolean[players][n];
+    stack = new int[n];
+    for (int p = 0; p < players; p++)
+      for (int c = 0; c < colorCount; c++)
+        frontier[p][c] = new int[8];
+    // Claim every starting tile before any region grows, so no region swallows another's start.
+    for (int p = 0; p < players; p++) {
+      if (owner[starts[p]] != UNOWNED)
+        throw new IllegalArgumentException("two players start on tile " + starts[p]);
+      regionColor[p] = colors[starts[p]];
+      claim(p, starts[p]);
+    }
+    for (int p = 0; p < players; p++) {
+      for (int e = adj.start[starts[p]]; e < adj.start[starts[p] + 1]; e++)
+        enqueue(p, adj.target[e]);
+      grow(p, regionColor[p]);
+    }
+  }
+
+  /**
+   * Makes the given player recolor their region with the given color id and absorb the
+   * unowned tiles of that color that touch it. Returns the number of tiles absorbed.
+   */
+  public int flood(int player, int color) {
+    for (int p = 0; p < players; p++)
+      if (p != player && regionColor[p] == color)
+        throw new IllegalArgumentException(Palette.name(color) + " belongs to player " + p);
+    int before = regionSize[player];
+    regionColor[player] = color;
+    grow(player, color);
+    return regionSize[player] - before;
+  }
+
+  /**
+   * Absorbs into the player's region every unowned tile of the given color in its frontier,
+   * and everything of that color connected to them.
+   */
+  private void grow(int player, int color) {
+    int[] bucket = frontier[player][color];
+    int top = 0;
+    for (int k = 0; k < frontierSize[player][color]; k++) {
+      int t = bucket[k];
+      onFrontier[player][t] = false;
+      if (owner[t] == UNOWNED) {
+        claim(player, t);
+        stack[top++] = t;
+      }
+    }
+    frontierSize[player][color] = 0;
+    while (top > 0) {
+      int i = stack[--top];
+      for (int e = adj.start[i]; e < adj.start[i + 1]; e++) {
+        int j = adj.target[e];
+        if (owner[j] != UNOWNED)
+          continue;
+        if (colors[j] == color) {
+          claim(player, j);
+          onFrontier[player][j] = false;
+          stack[top++] = j;
+        }
+        else
+          enqueue(player, j);
+      }
+    }
+  }
+
+  private void claim(int player, int i) {
+    owner[i] = player;
+    regionSize[player]++;
+    owned++;
+  }
+
+  /**
+   * Adds the given tile to the player's frontier bucket of its color, unless it is owned or
+   * already there.
+   */
+  private void enqueue(int player, int j) {
+    if (owner[j] != UNOWNED || onFrontier[player][j])
+      return;
+    onFrontier[player][j] = true;
+    int c = colors[j];
+    if (frontierSize[player][c] == frontier[player][c].length)
+      frontier[player][c] = Arrays.copyOf(frontier[player][c], 2 * frontier[player][c].length);
+    frontier[player][c][frontierSize[player][c]++] = j;
+  }
+
+  /**
+   * Returns the number of tiles the given player would absorb with the given color,
+   * without changing the board.
+   */
+  public int gain(int player, int color) {
+    if (mark == null)
+      mark = new int[colors.length];
+    if (++epoch == 0) {
+      Arrays.fill(mark, 0);
+      epoch = 1;
+    }
+    int[] bucket = frontier[player][color];
+    int top = 0, gain = 0;
+    for (int k = 0; k < frontierSize[player][color]; k++) {
+      int t = bucket[k];
+      if (owner[t] == UNOWNED && mark[t] != epoch) {
+        mark[t] = epoch;
+        stack[top++] = t;
+      }
+    }
+    while (top > 0) {
+      int i = stack[--top];
+      gain++;
+      for (int e = adj.start[i]; e < adj.start[i + 1]; e++) {
+        int j = adj.target[e];
+        if (owner[j] == UNOWNED && colors[j] == color && mark[j] != epoch) {
+          mark[j] = epoch;
+          stack[top++] = j;
+        }
+      }
+    }
+    return gain;
+  }
+
+  /**
+   * Returns true iff the given player may pick the given color: no other region has it.
+   */
+  public boolean isLegal(int player, int color) {
+    for (int p = 0; p < players; p++)
+      if (p != player && regionColor[p] == color)
+        return false;
+    return true;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int players() {
+    return players;
+  }
+
+  public int colorCount() {
+    return colorCount;
+  }
+
+  /**
+   * Returns the player owning the tile at the given index, or UNOWNED.
+   */
+  public int owner(int index) {
+    return owner[index];
+  }
+
+  /**
+   * Returns the color id of the tile at the given index.
+   */
+  public int colorAt(int index) {
+    return owner[index] == UNOWNED ? colors[index] : regionColor[owner[index]];
+  }
+
+  public int regionColor(int player) {
+    return regionColor[player];
+  }
+
+  public int regionSize(int player) {
+    return regionSize[player];
+  }
+
+  /**
+   * Returns true iff every tile is owned.
+   */
+  public boolean isOver() {
+    return owned == colors.length;
+  }
+
+  /**
+   * Returns this board as a string of color names, each followed by its owner's number.
+   */
+  public String toString() {
+    StringBuilder ans = new StringBuilder();
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        int i = y * size + x;
+        ans.append(Palette.name(colorAt(i))).append(owner[i] == UNOWNED ? "" : "" + owner[i]);
+        ans.append(x + 1 < size ? "\t" : "\n");
+      }
+    }
+    return ans.toString();
+  }
+
+  /**
+   * A move rule for versus games.
+   */
+  public interface Player {
+    int choose(VersusBoard board, int me, Random gen);
+  }
+
+  /**
+   * The legal color that absorbs the most tiles now, ties to the lowest id. When no color
+   * absorbs anything, a legal color other than the player's own, so that the own color is
+   * given up: the opponent may then take the tiles of it that only they touch.
+   */
+  public static final Player GREEDY = (board, me, gen) -> {
+    int best = -1, bestGain = 0;
+    for (int c = 0; c < board.colorCount; c++)
+      if (board.isLegal(me, c)) {
+        int gain = board.gain(me, c);
+        if (gain > bestGain) {
+          best = c;
+          bestGain = gain;
+        }
+      }
+    return best >= 0 ? best : board.otherLegalColor(me, 0);
+  };
+
+  /**
+   * A legal color picked at random among those that absorb something or, if none does, a
+   * legal color other than the player's own.
+   */
+  public static final Player RANDOM = (board, me, gen) -> {
+    int[] choices = new int[board.colorCount];
+    int n = 0;
+    for (int c = 0; c < board.colorCount; c++)
+      if (board.isLegal(me, c) && board.gain(me, c) > 0)
+        choices[n++] = c;
+    return n > 0 ? choices[gen.nextInt(n)] : board.otherLegalColor(me, gen.nextInt(board.colorCount));
+  };
+
+  /**
+   * Returns the first legal color, from the given one on (wrapping around), that is not the
+   * player's own, or the own color if there is no other.
+   */
+  int otherLegalColor(int player, int from) {
+    for (int k = 0; k < colorCount; k++) {
+      int c = (from + k) % colorCount;
+      if (c != regionColor[player] && isLegal(player, c))
+        return c;
+    }
+    return regionColor[player];
+  }
+
+  /**
+   * Plays two players against each other, taking turns, until the board is full, two full
+   * rounds go by without a tile changing hands, or maxTurns turns have been played.
+   * (A player who gives up a color with a move that absorbs nothing lets the other take
+   * it in the same round or the next, so two idle rounds in a row mean no one will move
+   * again.) Returns the final board.
+   */
+  public static VersusBoard play(Board start, Player first, Player second, Random gen, int maxTurns) {
+    VersusBoard board = new VersusBoard(start);
+    Player[] seats = { first, second };
+    for (int turn = 0, idle = 0; !board.isOver() && turn < maxTurns && idle < 2 * seats.length; turn++) {
+      int p = turn % seats.length;
+      idle = board.flood(p, seats[p].choose(board, p, gen)) > 0 ? 0 : idle + 1;
+    }
+    return board;
+  }
+
+  /**
+   * Plays AI-vs-AI matches of greedy against random on seeded boards, swapping seats every
+   * other game, and reports the results and the throughput.
+   *
+   * Usage: VersusBoard [size [games]]
+   */
+  public static void main(String... args) {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : Constants.DEFAULT_SIZE;
+    int games = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+    System.out.println(new VersusBoard(new Board(size, new Random(46))));
+    int greedyWins = 0, randomWins = 0, draws = 0;
+    int maxTurns = 100 * size * size;
+    long start = System.nanoTime();
+    for (int g = 0; g < games; g++) {
+      Random gen = new Random(46L * 1_000_003 + g);
+      boolean greedyFirst = g % 2 == 0;
+      VersusBoard board = play(new Board(size, gen), greedyFirst ? GREEDY : RANDOM, greedyFirst ? RANDOM : GREEDY,
+          gen, maxTurns);
+      int greedy = board.regionSize(greedyFirst ? 0 : 1), random = board.regionSize(greedyFirst ? 1 : 0);
+      if (greedy > random)
+        greedyWins++;
+      else if (random > greedy)
+        randomWins++;
+      else
+        draws++;
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("size %d, %d games: greedy won %d, random won %d, %d draws%n", size, games, greedyWins,
+        randomWins, draws);
+    System.out.printf("%.0f games/s%n", games / seconds);
+  }
+}
@@ -29,10 +29,28 @@ public enum WaterColor {
     return color;
   }
   
+  /**
+   * Returns the water color with the given color id (its ordinal). Palettes of more than
+   * five colors have ids that are no water color; code that may see those boards works
+   * with color ids instead.
+   */
+  public static WaterColor of(int id) {
+    if (id < 0 || id >= n)
+      throw new IllegalArgumentException("color id " + id + " is not a water color");
+    return values()[id];
+  }
+
   /**
    * Returns a water color, selected at random and with equal probability.
    */
   public static WaterColor pickOne() {
+    return pickOne(gen);
+  }
+
+  /**
+   * Returns a water color, selected with equal probability using the given generator.
+   */
+  public static WaterColor pickOne(Random gen) {
     return values()[gen.nextInt(n)];
   }
   